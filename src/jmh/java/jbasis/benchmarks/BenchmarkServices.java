@@ -0,0 +1,177 @@
+package jbasis.benchmarks;
+
+import jbasis.interception.Profile;
+import jbasis.interception.Retry;
+import jbasis.ioc.Registry;
+
+/**
+ * Services and registry shared by the benchmarks.
+ * <p>
+ * The autowired graph is a diamond five constructors deep:
+ * Root depends on Left and Right, both of which depend on
+ * Middle, which depends on Leaf.
+ */
+public final class BenchmarkServices {
+  private BenchmarkServices() {}
+
+  public interface Counter {
+    int increment(int value);
+  }
+
+  public static class CounterImpl implements Counter {
+    @Override
+    public int increment(int value) {
+      return value + 1;
+    }
+  }
+
+  public interface ProfiledCounter {
+    int increment(int value);
+  }
+
+  public static class ProfiledCounterImpl implements ProfiledCounter {
+    @Override
+    @Profile
+    public int increment(int value) {
+      return value + 1;
+    }
+  }
+
+  public interface RetryingCounter {
+    int increment(int value);
+  }
+
+  public static class RetryingCounterImpl implements RetryingCounter {
+    @Override
+    @Profile
+    @Retry(tries = 3, backOffIntervalMilliseconds = 1)
+    public int increment(int value) {
+      return value + 1;
+    }
+  }
+
+  public interface Scoped {
+    int value();
+  }
+
+  public static class ScopedImpl implements Scoped {
+    @Override
+    public int value() {
+      return 1;
+    }
+  }
+
+  public interface Transient {
+    int value();
+  }
+
+  public static class TransientImpl implements Transient {
+    @Override
+    public int value() {
+      return 1;
+    }
+  }
+
+  public interface Leaf {
+    int value();
+  }
+
+  public static class LeafImpl implements Leaf {
+    @Override
+    public int value() {
+      return 1;
+    }
+  }
+
+  public interface Middle {
+    int value();
+  }
+
+  public static class MiddleImpl implements Middle {
+    private final Leaf leaf;
+
+    public MiddleImpl(Leaf leaf) {
+      this.leaf = leaf;
+    }
+
+    @Override
+    public int value() {
+      return leaf.value() + 1;
+    }
+  }
+
+  public interface Left {
+    int value();
+  }
+
+  public static class LeftImpl implements Left {
+    private final Middle middle;
+
+    public LeftImpl(Middle middle) {
+      this.middle = middle;
+    }
+
+    @Override
+    public int value() {
+      return middle.value() + 1;
+    }
+  }
+
+  public interface Right {
+    int value();
+  }
+
+  public static class RightImpl implements Right {
+    private final Middle middle;
+
+    public RightImpl(Middle middle) {
+      this.middle = middle;
+    }
+
+    @Override
+    public int value() {
+      return middle.value() + 1;
+    }
+  }
+
+  public interface Root {
+    int value();
+  }
+
+  public static class RootImpl implements Root {
+    private final Left left;
+    private final Right right;
+
+    public RootImpl(Left left, Right right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public int value() {
+      return left.value() + right.value();
+    }
+  }
+
+  /**
+   * Registers the benchmark services. The counters are singletons so
+   * that dispatch can be measured without resolution; the autowired
+   * graph is transient so every resolve builds it from scratch.
+   */
+  public static class BenchmarkRegistry extends Registry {
+    public BenchmarkRegistry() {
+      register(cfg -> {
+        cfg.addSingleton(Counter.class, CounterImpl.class);
+        cfg.addSingleton(ProfiledCounter.class, ProfiledCounterImpl.class);
+        cfg.addSingleton(RetryingCounter.class, RetryingCounterImpl.class);
+        cfg.addScoped(Scoped.class, ScopedImpl.class);
+        cfg.addTransient(Transient.class, TransientImpl.class);
+        cfg.addTransient(Leaf.class, LeafImpl.class);
+        cfg.addTransient(Middle.class, MiddleImpl.class);
+        cfg.addTransient(Left.class, LeftImpl.class);
+        cfg.addTransient(Right.class, RightImpl.class);
+        cfg.addTransient(Root.class, RootImpl.class);
+      });
+    }
+  }
+}
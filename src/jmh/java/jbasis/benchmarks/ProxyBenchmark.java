@@ -0,0 +1,81 @@
+package jbasis.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jbasis.benchmarks.BenchmarkServices.BenchmarkRegistry;
+import jbasis.benchmarks.BenchmarkServices.Counter;
+import jbasis.benchmarks.BenchmarkServices.CounterImpl;
+import jbasis.benchmarks.BenchmarkServices.ProfiledCounter;
+import jbasis.benchmarks.BenchmarkServices.RetryingCounter;
+import jbasis.ioc.ContainerImpl;
+import jbasis.ioc.InvocationMode;
+import jbasis.ioc.ProxyEngine;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+
+/**
+ * Measures a call through a proxied service against a direct call
+ * to the same implementation, without interceptors and with the
+ * bundled Profile and Retry interceptor chains.
+ */
+@State(Scope.Benchmark)
+public class ProxyBenchmark {
+
+  @Param({"JDK", "GENERATED"})
+  public ProxyEngine proxyEngine;
+
+  @Param({"METHOD_HANDLE", "REFLECTION"})
+  public InvocationMode invocationMode;
+
+  private ContainerImpl container;
+  private Counter direct;
+  private Counter counter;
+  private ProfiledCounter profiled;
+  private RetryingCounter retrying;
+  private int value;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    LoggerFactory.registerFactory(Log4JLogger::new);
+    container = new ContainerImpl(cfg -> {
+      cfg.useProxyEngine(proxyEngine);
+      cfg.useInvocationMode(invocationMode);
+      cfg.apply(BenchmarkRegistry.class);
+    });
+    direct = new CounterImpl();
+    counter = container.resolve(Counter.class);
+    profiled = container.resolve(ProfiledCounter.class);
+    retrying = container.resolve(RetryingCounter.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    container.close();
+  }
+
+  @Benchmark
+  public int directCall() {
+    return value = direct.increment(value);
+  }
+
+  @Benchmark
+  public int proxiedCall() {
+    return value = counter.increment(value);
+  }
+
+  @Benchmark
+  public int profiledCall() {
+    return value = profiled.increment(value);
+  }
+
+  @Benchmark
+  public int profiledAndRetryingCall() {
+    return value = retrying.increment(value);
+  }
+}
@@ -0,0 +1,75 @@
+package jbasis.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jbasis.benchmarks.BenchmarkServices.BenchmarkRegistry;
+import jbasis.benchmarks.BenchmarkServices.Counter;
+import jbasis.benchmarks.BenchmarkServices.Root;
+import jbasis.benchmarks.BenchmarkServices.Scoped;
+import jbasis.benchmarks.BenchmarkServices.Transient;
+import jbasis.ioc.ContainerImpl;
+import jbasis.ioc.InvocationMode;
+import jbasis.ioc.ProxyEngine;
+import jbasis.ioc.ServiceFactory;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+
+/**
+ * Measures service resolution for each lifetime and for a
+ * transient graph built through constructor autowiring.
+ */
+@State(Scope.Benchmark)
+public class ResolveBenchmark {
+
+  @Param({"JDK", "GENERATED"})
+  public ProxyEngine proxyEngine;
+
+  @Param({"METHOD_HANDLE", "REFLECTION"})
+  public InvocationMode invocationMode;
+
+  private ContainerImpl container;
+  private ServiceFactory scope;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    LoggerFactory.registerFactory(Log4JLogger::new);
+    container = new ContainerImpl(cfg -> {
+      cfg.useProxyEngine(proxyEngine);
+      cfg.useInvocationMode(invocationMode);
+      cfg.apply(BenchmarkRegistry.class);
+    });
+    scope = container.createScope();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    scope.close();
+    container.close();
+  }
+
+  @Benchmark
+  public Counter singleton() {
+    return container.resolve(Counter.class);
+  }
+
+  @Benchmark
+  public Scoped scoped() {
+    return scope.resolve(Scoped.class);
+  }
+
+  @Benchmark
+  public Transient transientService() {
+    return container.resolve(Transient.class);
+  }
+
+  @Benchmark
+  public Root autowiredGraph() {
+    return container.resolve(Root.class);
+  }
+}
@@ -0,0 +1,50 @@
+package jbasis.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import jbasis.benchmarks.BenchmarkServices.BenchmarkRegistry;
+import jbasis.benchmarks.BenchmarkServices.Scoped;
+import jbasis.ioc.ContainerImpl;
+import jbasis.ioc.ServiceFactory;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+
+/**
+ * Measures the per-request cost of creating and closing a scope,
+ * with and without resolving a scoped service in between.
+ */
+@State(Scope.Benchmark)
+public class ScopeBenchmark {
+
+  private ContainerImpl container;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    LoggerFactory.registerFactory(Log4JLogger::new);
+    container = new ContainerImpl(cfg -> cfg.apply(BenchmarkRegistry.class));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    container.close();
+  }
+
+  @Benchmark
+  public void createAndClose() {
+    ServiceFactory scope = container.createScope();
+    scope.close();
+  }
+
+  @Benchmark
+  public Scoped createResolveAndClose() {
+    ServiceFactory scope = container.createScope();
+    Scoped scoped = scope.resolve(Scoped.class);
+    scope.close();
+    return scoped;
+  }
+}
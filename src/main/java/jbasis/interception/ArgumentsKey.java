@@ -0,0 +1,60 @@
+package jbasis.interception;
+
+import java.util.Arrays;
+
+/**
+ * The arguments of a call as a map key, compared element by element so
+ * arrays are compared by their contents. A key may also be bound to
+ * the object the method was called on, which is compared by identity.
+ */
+final class ArgumentsKey {
+  private static final Object[] NO_VALUES = new Object[0];
+  private static final ArgumentsKey NO_ARGUMENTS = new ArgumentsKey(null, NO_VALUES);
+
+  private final Object target;
+  private final Object[] values;
+  private final int hashCode;
+
+  private ArgumentsKey(Object target, Object[] values) {
+    this.target = target;
+    this.values = values;
+    this.hashCode = 31 * System.identityHashCode(target) + Arrays.deepHashCode(values);
+  }
+
+  /**
+   * Creates the key of the arguments of a call.
+   *
+   * @param arguments the arguments, which are copied
+   * @return the key
+   */
+  static ArgumentsKey of(Object[] arguments) {
+    return arguments == null || arguments.length == 0
+        ? NO_ARGUMENTS : new ArgumentsKey(null, arguments.clone());
+  }
+
+  /**
+   * Creates the key of the arguments of a call on a target object.
+   *
+   * @param target the object the method is called on
+   * @param arguments the arguments, which are copied
+   * @return the key
+   */
+  static ArgumentsKey of(Object target, Object[] arguments) {
+    return new ArgumentsKey(target, arguments == null || arguments.length == 0
+        ? NO_VALUES : arguments.clone());
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof ArgumentsKey)) {
+      return false;
+    }
+    ArgumentsKey other = (ArgumentsKey) obj;
+    return target == other.target && Arrays.deepEquals(values, other.values);
+  }
+}
@@ -0,0 +1,26 @@
+package jbasis.interception;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a method on the executor of the container.
+ * <p>
+ * The proxy runs the interceptors of the method on the calling thread,
+ * submits the method itself to the executor and returns a
+ * CompletableFuture right away; afterInvoke and onError run when the
+ * method completes. The method must be declared to return a
+ * CompletableFuture, CompletionStage or Future. If it returns a stage
+ * of its own, the returned future completes with that stage.
+ * <p>
+ * This annotation is not an Interceptor; it is handled by the proxy.
+ * The executor is configured with
+ * {@code ContainerConfigurer.useAsyncExecutor} and is shut down when
+ * the container is closed.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Async {
+}
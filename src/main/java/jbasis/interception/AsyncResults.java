@@ -0,0 +1,79 @@
+package jbasis.interception;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Helpers for interceptors of methods that complete asynchronously.
+ */
+final class AsyncResults {
+  private AsyncResults() {}
+
+  /**
+   * Determines whether a method returns a CompletionStage,
+   * CompletableFuture or Future, which the interceptor may replace with
+   * a CompletableFuture. These are the methods whose result the proxy
+   * waits for before running afterInvoke.
+   */
+  static boolean isAsync(Method method) {
+    Class<?> returnType = method.getReturnType();
+    return returnType == CompletionStage.class
+        || returnType == CompletableFuture.class
+        || returnType == Future.class;
+  }
+
+  /**
+   * Gets the stage with which the result of an async method completes.
+   * A Future that is not a CompletionStage cannot notify anyone when it
+   * completes, so unless it is done a thread of the executor waits for
+   * it. Interceptors pass the executor of the container, which runs
+   * async methods, so the wait never parks a common pool thread.
+   *
+   * @param result the value returned by the method
+   * @param executor waits for a Future that is not done
+   * @return the stage, which fails with a RejectedExecutionException if
+   *     the executor rejects the wait
+   */
+  @SuppressWarnings("unchecked")
+  static CompletionStage<Object> toStage(Object result, Executor executor) {
+    if (result instanceof CompletionStage) {
+      return (CompletionStage<Object>) result;
+    }
+    if (result == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    Future<Object> future = (Future<Object>) result;
+    if (future.isDone()) {
+      return CompletableFuture.completedFuture(null).thenApply(ignored -> await(future));
+    }
+    try {
+      return CompletableFuture.supplyAsync(() -> await(future), executor);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  static Throwable unwrap(Throwable error) {
+    if (error instanceof CompletionException && error.getCause() != null) {
+      return error.getCause();
+    }
+    return error;
+  }
+
+  private static Object await(Future<Object> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw new CompletionException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    }
+  }
+}
@@ -0,0 +1,269 @@
+package jbasis.interception;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jbasis.metrics.BulkheadMetrics;
+import jbasis.metrics.MethodBulkheads;
+
+/**
+ * Limits the number of concurrent calls to a method.
+ * <p>
+ * A call that finds {@link #maxConcurrentCalls()} calls running is
+ * rejected with a {@link BulkheadFullException}, unless waiting is
+ * enabled with {@link #maxWaitingCalls()} and
+ * {@link #maxWaitMilliseconds()}, in which case it waits up to that
+ * long for a running call to finish. Calls to methods returning a
+ * CompletionStage never wait; they get a failed CompletableFuture and
+ * hold their permit until the returned stage completes.
+ * <p>
+ * A call holds its permit until it has completed, so the limit holds
+ * whatever the order of the annotations: the tries of a {@link Retry}
+ * declared before or after {@code @Bulkhead} run under the permit of
+ * the call, and a call rejected by the bulkhead is retried through it,
+ * taking a permit before the method is invoked again.
+ * <p>
+ * In adaptive mode the limit starts at {@link #maxConcurrentCalls()}
+ * and follows the observed latency: it grows by one while calls are as
+ * fast as the fastest seen and the bulkhead is busy, and shrinks by a
+ * tenth when a call fails or takes more than twice as long, but never
+ * below {@link #minConcurrentCalls()}.
+ * <p>
+ * The state is shared by all calls to the method on instances of the
+ * same implementation class and can be read from
+ * {@link MethodBulkheads}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = BulkheadInterceptor.class)
+public @interface Bulkhead {
+
+  /**
+   * Sets the number of calls allowed to run at once, the upper bound
+   * of the limit in adaptive mode.
+   * @return the maximum number of concurrent calls
+   */
+  int maxConcurrentCalls() default 25;
+
+  /**
+   * Sets the number of calls that may wait for a permit.
+   * @return the maximum number of waiting calls
+   */
+  int maxWaitingCalls() default 0;
+
+  /**
+   * Sets how long a call waits for a permit.
+   * @return the maximum number of milliseconds to wait
+   */
+  long maxWaitMilliseconds() default 0;
+
+  /**
+   * Sets whether the limit adapts to the observed latency.
+   * @return true or false
+   */
+  boolean adaptive() default false;
+
+  /**
+   * Sets the lower bound of the limit in adaptive mode.
+   * @return the minimum number of concurrent calls
+   */
+  int minConcurrentCalls() default 1;
+}
+
+@Stateless
+class BulkheadInterceptor extends EmptyInterceptor implements BulkheadMetrics {
+  private static final double LATENCY_TOLERANCE = 2.0;
+  private static final double DECREASE_FACTOR = 0.9;
+  private static final Object PERMIT = new Object();
+  private static final Object FAILED = new Object();
+
+  private final Bulkhead bulkhead;
+  private final int maxLimit;
+  private final int minLimit;
+  private final long maxWaitNanos;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger limit;
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final AtomicLong minLatency = new AtomicLong(Long.MAX_VALUE);
+  private final LongAdder rejected = new LongAdder();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private volatile BulkheadFullException rejection;
+  private volatile boolean registered;
+
+  public BulkheadInterceptor(Bulkhead bulkhead) {
+    this.bulkhead = bulkhead;
+    this.maxLimit = Math.max(bulkhead.maxConcurrentCalls(), 1);
+    this.minLimit = Math.min(Math.max(bulkhead.minConcurrentCalls(), 1), maxLimit);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(bulkhead.maxWaitMilliseconds(), 0));
+    this.limit = new AtomicInteger(maxLimit);
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    if (!registered) {
+      MethodBulkheads.register(context.getMethod(), this);
+      registered = true;
+    }
+    boolean async = AsyncResults.isAsync(context.getMethod());
+    if (!tryAcquire() && (async || !await())) {
+      rejected.increment();
+      return reject(context, async);
+    }
+    context.setAttribute(PERMIT);
+    if (bulkhead.adaptive()) {
+      context.setLongAttribute(System.nanoTime());
+    }
+    return true;
+  }
+
+  @Override
+  public boolean onError(InvocationContext context, Throwable throwable) {
+    if (context.getAttribute() == PERMIT) {
+      context.setAttribute(FAILED);
+    }
+    return false;
+  }
+
+  @Override
+  public void onComplete(InvocationContext context) {
+    Object permit = context.getAttribute();
+    if (permit == null) {
+      return;
+    }
+    context.setAttribute(null);
+    if (bulkhead.adaptive()) {
+      adapt(System.nanoTime() - context.getLongAttribute(), permit == FAILED);
+    }
+    release();
+  }
+
+  @Override
+  public int getLimit() {
+    return limit.get();
+  }
+
+  @Override
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  @Override
+  public int getWaiting() {
+    return waiting.get();
+  }
+
+  @Override
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  private boolean tryAcquire() {
+    int current = inFlight.get();
+    while (current < limit.get()) {
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+      current = inFlight.get();
+    }
+    return false;
+  }
+
+  private void release() {
+    inFlight.decrementAndGet();
+    if (waiting.get() > 0) {
+      lock.lock();
+      try {
+        released.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Waits for a permit. A waiter registers itself before checking for
+   * a permit under the lock, so a call that finishes either leaves a
+   * permit the waiter sees or signals it.
+   */
+  private boolean await() {
+    if (maxWaitNanos == 0) {
+      return false;
+    }
+    for (;;) {
+      int current = waiting.get();
+      if (current >= bulkhead.maxWaitingCalls()) {
+        return false;
+      }
+      if (waiting.compareAndSet(current, current + 1)) {
+        break;
+      }
+    }
+
+    long remaining = maxWaitNanos;
+    lock.lock();
+    try {
+      while (!tryAcquire()) {
+        if (remaining <= 0) {
+          return false;
+        }
+        remaining = released.awaitNanos(remaining);
+      }
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      lock.unlock();
+      waiting.decrementAndGet();
+    }
+  }
+
+  private boolean reject(InvocationContext context, boolean async) {
+    BulkheadFullException exception = rejection;
+    if (exception == null) {
+      Method method = context.getMethod();
+      exception = new BulkheadFullException("Bulkhead is full for "
+          + method.getDeclaringClass().getName() + "." + method.getName());
+      rejection = exception;
+    }
+    if (async) {
+      CompletableFuture<Object> failed = new CompletableFuture<>();
+      failed.completeExceptionally(exception);
+      context.setResult(failed);
+      return false;
+    }
+    throw exception;
+  }
+
+  /**
+   * Additive increase while calls are as fast as the fastest seen and
+   * at least half of the limit is in use, multiplicative decrease on
+   * errors and slow calls. A lost race to update the limit is ignored.
+   */
+  private void adapt(long latency, boolean failed) {
+    long fastest = minLatency.get();
+    if (latency < fastest) {
+      minLatency.compareAndSet(fastest, latency);
+      fastest = latency;
+    }
+    int current = limit.get();
+    if (failed || latency > fastest * LATENCY_TOLERANCE) {
+      int decreased = Math.max(minLimit, Math.min(current - 1, (int) (current * DECREASE_FACTOR)));
+      limit.compareAndSet(current, decreased);
+    } else if (current < maxLimit && inFlight.get() * 2 >= current) {
+      limit.compareAndSet(current, current + 1);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package jbasis.interception;
+
+import jbasis.util.JBasisException;
+
+/**
+ * Thrown, or used to fail the returned CompletableFuture, when a
+ * call is rejected by a full {@link Bulkhead}.
+ * <p>
+ * Like {@link CircuitBreakerOpenException} it does not capture a stack
+ * trace and one instance is shared by all calls rejected by the same
+ * bulkhead.
+ */
+public class BulkheadFullException extends JBasisException {
+  private static final long serialVersionUID = 1L;
+
+  public BulkheadFullException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,185 @@
+package jbasis.interception;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jbasis.logging.Logger;
+import jbasis.logging.LoggerFactory;
+import jbasis.metrics.CacheStats;
+import jbasis.metrics.MethodCaches;
+
+/**
+ * Caches the results of a method by its arguments.
+ * <p>
+ * A call whose arguments are equal, element by element, to those of
+ * an earlier call is served from the cache without invoking the
+ * method. Failures are not cached. Methods returning a CompletionStage,
+ * CompletableFuture or Future cache the value their result completes
+ * with and are served a completed CompletableFuture; a returned Future
+ * that is not a CompletionStage is not cached.
+ * <p>
+ * The cache holds at most {@link #maxSize()} entries and evicts the
+ * ones least likely to be used again, judged by how often and how
+ * recently their arguments were seen. An entry expires
+ * {@link #ttlMilliseconds()} after it was computed. An entry older than
+ * {@link #refreshAfterMilliseconds()} is still served, but the first
+ * call that sees it invokes the method again in the background, on the
+ * executor of the container that created the proxy.
+ * <p>
+ * Entries are kept per target instance, so instances of the same
+ * implementation class, whether created by one container or by
+ * several, never see each other's results; the size limit applies to
+ * the entries of all instances together, and an entry keeps its
+ * instance reachable until it is evicted or expires. The statistics of the method
+ * can be read from {@link MethodCaches}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = CacheableInterceptor.class)
+public @interface Cacheable {
+
+  /**
+   * Sets the number of entries the cache holds.
+   * @return the maximum number of entries
+   */
+  int maxSize() default 1000;
+
+  /**
+   * Sets how long an entry is served. A negative value means entries
+   * do not expire.
+   * @return the number of milliseconds an entry lives
+   */
+  long ttlMilliseconds() default -1L;
+
+  /**
+   * Sets how old an entry is when it is refreshed in the background. A
+   * negative value means entries are not refreshed.
+   * @return the number of milliseconds before an entry is refreshed
+   */
+  long refreshAfterMilliseconds() default -1L;
+}
+
+@Stateless
+class CacheableInterceptor extends EmptyInterceptor implements CacheStats {
+  private static final Object NULL_VALUE = new Object();
+
+  private final Logger logger = LoggerFactory.get(getClass());
+  private final TinyLfuCache<ArgumentsKey, Object> cache;
+  private final long ttlNanos;
+  private final long refreshNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private volatile boolean registered;
+
+  public CacheableInterceptor(Cacheable cacheable) {
+    this.cache = new TinyLfuCache<>(cacheable.maxSize());
+    this.ttlNanos = cacheable.ttlMilliseconds() < 0
+        ? -1L : TimeUnit.MILLISECONDS.toNanos(cacheable.ttlMilliseconds());
+    this.refreshNanos = cacheable.refreshAfterMilliseconds() < 0
+        ? -1L : TimeUnit.MILLISECONDS.toNanos(cacheable.refreshAfterMilliseconds());
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    if (!registered) {
+      MethodCaches.register(context.getMethod(), this);
+      registered = true;
+    }
+    ArgumentsKey key = ArgumentsKey.of(context.getTarget(), context.getArguments());
+    TinyLfuCache.Node<ArgumentsKey, Object> node = cache.get(key);
+    if (node != null) {
+      long age = System.nanoTime() - node.writeNanos;
+      if (ttlNanos >= 0 && age >= ttlNanos) {
+        cache.remove(key, node);
+      } else {
+        hits.increment();
+        Object value = node.value;
+        if (refreshNanos >= 0 && age >= refreshNanos && node.startRefresh()) {
+          refresh(context, node);
+        }
+        value = value == NULL_VALUE ? null : value;
+        context.setResult(AsyncResults.isAsync(context.getMethod())
+            ? CompletableFuture.completedFuture(value) : value);
+        return false;
+      }
+    }
+    misses.increment();
+    context.setAttribute(key);
+    return true;
+  }
+
+  @Override
+  public void afterInvoke(InvocationContext context) {
+    ArgumentsKey key = (ArgumentsKey) context.getAttribute();
+    if (key != null) {
+      Object result = context.getResult();
+      // an async result the proxy did not wait for has no value to cache
+      if (result instanceof Future && AsyncResults.isAsync(context.getMethod())) {
+        return;
+      }
+      cache.put(key, result == null ? NULL_VALUE : result, System.nanoTime());
+    }
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return cache.evictionCount();
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  /**
+   * Invokes the target again on the executor of the container and
+   * replaces the value of the entry with the result. The interceptors
+   * after this one are not run for the refresh. A failed or rejected
+   * refresh keeps the old value.
+   */
+  private void refresh(InvocationContext context, TinyLfuCache.Node<ArgumentsKey, Object> node) {
+    boolean async = AsyncResults.isAsync(context.getMethod());
+    CompletableFuture<Object> refreshed;
+    try {
+      refreshed = CompletableFuture.supplyAsync(() -> {
+        try {
+          return context.proceed();
+        } catch (Throwable t) {
+          throw new CompletionException(t);
+        }
+      }, context.getExecutor());
+    } catch (RejectedExecutionException e) {
+      // the container is closing
+      node.refreshFailed();
+      return;
+    }
+    refreshed.thenCompose(result -> async
+        ? AsyncResults.toStage(result, context.getExecutor()) : CompletableFuture.completedFuture(result))
+      .whenComplete((value, error) -> {
+        if (error == null) {
+          node.refreshed(value == null ? NULL_VALUE : value, System.nanoTime());
+        } else {
+          logger.warn("Failed to refresh {}", context.getMethod(), AsyncResults.unwrap(error));
+          node.refreshFailed();
+        }
+      });
+  }
+}
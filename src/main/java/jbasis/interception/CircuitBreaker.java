@@ -0,0 +1,245 @@
+package jbasis.interception;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jbasis.logging.Logger;
+import jbasis.logging.LoggerFactory;
+
+/**
+ * Stops calling a method that keeps failing.
+ * <p>
+ * The outcomes of the latest calls are kept in a sliding window. Once
+ * the window holds at least {@link #minimumCalls()} calls and the
+ * percentage of failures reaches {@link #failureRateThreshold()}, the
+ * circuit opens and calls are rejected with a
+ * {@link CircuitBreakerOpenException} without invoking the method. After
+ * {@link #openDurationMilliseconds()} the circuit lets
+ * {@link #halfOpenProbes()} calls through: if they all succeed the
+ * circuit closes, if one fails it opens again.
+ * <p>
+ * Each call is recorded once, by the first interceptor callback for
+ * its outcome. Declared after {@link Retry}, a call rejected while the
+ * circuit is open is retried through the breaker, so the method is not
+ * invoked until the circuit lets calls through again, and a call whose
+ * tries fail is recorded once with the outcome of its last try.
+ * Declared before it, a call is recorded as failed when its first try
+ * fails.
+ * <p>
+ * The state is shared by all calls to the method on instances of the
+ * same implementation class.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = CircuitBreakerInterceptor.class)
+public @interface CircuitBreaker {
+
+  /**
+   * Sets the percentage of failed calls that opens the circuit.
+   * @return the failure rate threshold between 0 and 100
+   */
+  double failureRateThreshold() default 50;
+
+  /**
+   * Sets the number of latest calls whose outcome is considered.
+   * @return the size of the sliding window
+   */
+  int windowSize() default 100;
+
+  /**
+   * Sets the number of calls needed before the failure rate is 
+   * evaluated.
+   * @return the minimum number of calls
+   */
+  int minimumCalls() default 10;
+
+  /**
+   * Sets how long the circuit stays open before calls are let
+   * through again.
+   * @return the number of milliseconds the circuit stays open
+   */
+  long openDurationMilliseconds() default 60000;
+
+  /**
+   * Sets the number of calls let through while half open.
+   * @return the number of probe calls
+   */
+  int halfOpenProbes() default 3;
+}
+
+@Stateless
+class CircuitBreakerInterceptor extends EmptyInterceptor {
+  static final int CLOSED = 0;
+  static final int OPEN = 1;
+  static final int HALF_OPEN = 2;
+
+  private static final int EMPTY = 0;
+  private static final int SUCCESS = 1;
+  private static final int FAILURE = 2;
+
+  private static final long PROBE = 1;
+  private static final long RECORDED = 2;
+
+  private final Logger logger = LoggerFactory.get(getClass());
+  private final CircuitBreaker circuitBreaker;
+  private final long openDurationNanos;
+  private final int windowSize;
+  private final int halfOpenProbes;
+
+  private final AtomicInteger state = new AtomicInteger(CLOSED);
+  private final AtomicIntegerArray window;
+  private final AtomicLong cursor = new AtomicLong();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+  private final AtomicInteger probePermits = new AtomicInteger();
+  private final AtomicInteger probeSuccesses = new AtomicInteger();
+  private volatile long openedAt;
+  private volatile CircuitBreakerOpenException rejection;
+
+  public CircuitBreakerInterceptor(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+    this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(
+        Math.max(circuitBreaker.openDurationMilliseconds(), 0));
+    this.windowSize = Math.max(circuitBreaker.windowSize(), 1);
+    this.halfOpenProbes = Math.max(circuitBreaker.halfOpenProbes(), 1);
+    this.window = new AtomicIntegerArray(windowSize);
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    if (context.getLongAttribute() != 0) {
+      // a call entering the breaker again is recorded again
+      context.setLongAttribute(0);
+    }
+    int current = state.get();
+    if (current == CLOSED) {
+      return true;
+    }
+    if (current == OPEN) {
+      if (System.nanoTime() - openedAt < openDurationNanos
+          || !state.compareAndSet(OPEN, HALF_OPEN)) {
+        return reject(context);
+      }
+      logger.info("Circuit half open for {}", context.getMethod().getName());
+      probeSuccesses.set(0);
+      probePermits.set(halfOpenProbes);
+    }
+    if (acquireProbe()) {
+      context.setLongAttribute(PROBE);
+      return true;
+    }
+    return reject(context);
+  }
+
+  @Override
+  public void afterInvoke(InvocationContext context) {
+    long call = context.getLongAttribute();
+    if (call == RECORDED) {
+      return;
+    }
+    context.setLongAttribute(RECORDED);
+    if (call == PROBE) {
+      if (probeSuccesses.incrementAndGet() >= halfOpenProbes 
+          && state.compareAndSet(HALF_OPEN, CLOSED)) {
+        resetWindow();
+        logger.info("Circuit closed for {}", context.getMethod().getName());
+      }
+    } else {
+      record(SUCCESS, context.getMethod());
+    }
+  }
+
+  @Override
+  public boolean onError(InvocationContext context, Throwable throwable) {
+    long call = context.getLongAttribute();
+    if (call == RECORDED) {
+      return false;
+    }
+    context.setLongAttribute(RECORDED);
+    if (call == PROBE) {
+      open(HALF_OPEN, context.getMethod());
+    } else {
+      record(FAILURE, context.getMethod());
+    }
+    return false;
+  }
+
+  int getState() {
+    return state.get();
+  }
+
+  private boolean acquireProbe() {
+    int permits = probePermits.get();
+    while (permits > 0) {
+      if (probePermits.compareAndSet(permits, permits - 1)) {
+        return true;
+      }
+      permits = probePermits.get();
+    }
+    return false;
+  }
+
+  private boolean reject(InvocationContext context) {
+    CircuitBreakerOpenException exception = rejection;
+    if (exception == null) {
+      Method method = context.getMethod();
+      exception = new CircuitBreakerOpenException("Circuit breaker is open for " 
+          + method.getDeclaringClass().getName() + "." + method.getName());
+      rejection = exception;
+    }
+    if (AsyncResults.isAsync(context.getMethod())) {
+      CompletableFuture<Object> failed = new CompletableFuture<>();
+      failed.completeExceptionally(exception);
+      context.setResult(failed);
+      return false;
+    }
+    throw exception;
+  }
+
+  private void record(int outcome, Method method) {
+    int slot = (int) (cursor.getAndIncrement() % windowSize);
+    int previous = window.getAndSet(slot, outcome);
+    if (previous == EMPTY) {
+      calls.incrementAndGet();
+    } else if (previous == FAILURE) {
+      failures.decrementAndGet();
+    }
+    if (outcome == FAILURE) {
+      int failed = failures.incrementAndGet();
+      int total = calls.get();
+      if (state.get() == CLOSED
+          && total >= circuitBreaker.minimumCalls()
+          && failed * 100.0 >= circuitBreaker.failureRateThreshold() * total) {
+        open(CLOSED, method);
+      }
+    }
+  }
+
+  /**
+   * Opens the circuit. The open time is published before the state
+   * so that no thread sees the circuit open with a stale open time.
+   */
+  private void open(int expected, Method method) {
+    openedAt = System.nanoTime();
+    probePermits.set(0);
+    if (state.compareAndSet(expected, OPEN)) {
+      logger.warn("Circuit opened for {}", method.getName());
+    }
+  }
+
+  private void resetWindow() {
+    for (int i = 0; i < windowSize; i++) {
+      window.set(i, EMPTY);
+    }
+    calls.set(0);
+    failures.set(0);
+  }
+}
@@ -0,0 +1,19 @@
+package jbasis.interception;
+
+import jbasis.util.JBasisException;
+
+/**
+ * Thrown, or used to fail the returned CompletableFuture, when a
+ * call is rejected by an open {@link CircuitBreaker}.
+ * <p>
+ * Rejections are expected to be frequent while a dependency is down,
+ * so the exception does not capture a stack trace and one instance is
+ * shared by all calls rejected by the same circuit breaker.
+ */
+public class CircuitBreakerOpenException extends JBasisException {
+  private static final long serialVersionUID = 1L;
+
+  public CircuitBreakerOpenException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,126 @@
+package jbasis.interception;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jbasis.util.JBasisException;
+
+/**
+ * Coalesces concurrent calls to a method with equal arguments.
+ * <p>
+ * The first call with given arguments invokes the method; calls with
+ * equal arguments that arrive while it runs wait for it and share its
+ * result or failure instead of invoking the method themselves. Once
+ * the first call completes, the next call with those arguments invokes
+ * the method again, so nothing is retained between calls. Calls to
+ * methods returning a CompletionStage do not block; they get a
+ * CompletableFuture that completes with the shared result.
+ * <p>
+ * Interceptors see errors in the order their annotations are declared
+ * and the first one to handle an error hides it from the rest, so
+ * declare {@code @Coalesce} after interceptors that handle errors,
+ * such as {@link Retry}: waiting calls then share the outcome of the
+ * last try rather than the failure of the first. Waiting calls skip
+ * the interceptors declared after {@code @Coalesce}.
+ * <p>
+ * A call that hangs holds up every call waiting for it. Blocking calls
+ * stop waiting after {@link #maxWaitMilliseconds()} and invoke the
+ * method themselves; calls to methods returning a CompletionStage are
+ * not bounded, so declare a {@link Timeout} before {@code @Coalesce}
+ * for them.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = CoalesceInterceptor.class)
+public @interface Coalesce {
+
+  /**
+   * Sets how long a blocking call waits for the call it shares before
+   * invoking the method itself. A negative value waits without bound.
+   * @return the maximum number of milliseconds to wait
+   */
+  long maxWaitMilliseconds() default -1L;
+}
+
+@Stateless
+class CoalesceInterceptor extends EmptyInterceptor {
+  private final ConcurrentMap<ArgumentsKey, Flight> flights = new ConcurrentHashMap<>();
+  private final long maxWaitMilliseconds;
+
+  public CoalesceInterceptor(Coalesce coalesce) {
+    this.maxWaitMilliseconds = coalesce.maxWaitMilliseconds();
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    ArgumentsKey key = ArgumentsKey.of(context.getArguments());
+    Flight flight = new Flight(key);
+    Flight leader = flights.putIfAbsent(key, flight);
+    if (leader == null) {
+      context.setAttribute(flight);
+      return true;
+    }
+
+    if (AsyncResults.isAsync(context.getMethod())) {
+      context.setResult(leader.copy());
+      return false;
+    }
+    // a blocking call made by the leader itself would wait for itself
+    if (leader.thread == Thread.currentThread()) {
+      return true;
+    }
+    try {
+      context.setResult(maxWaitMilliseconds < 0
+          ? leader.get() : leader.get(maxWaitMilliseconds, TimeUnit.MILLISECONDS));
+      return false;
+    } catch (TimeoutException e) {
+      return true;
+    } catch (ExecutionException e) {
+      throw new JBasisException(e.getCause().getMessage(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new JBasisException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void afterInvoke(InvocationContext context) {
+    Flight flight = (Flight) context.getAttribute();
+    if (flight != null) {
+      flights.remove(flight.key, flight);
+      flight.complete(context.getResult());
+    }
+  }
+
+  @Override
+  public boolean onError(InvocationContext context, Throwable throwable) {
+    Flight flight = (Flight) context.getAttribute();
+    if (flight != null) {
+      flights.remove(flight.key, flight);
+      flight.completeExceptionally(throwable);
+    }
+    return false;
+  }
+
+  /**
+   * The result of a call in progress, shared with the calls waiting
+   * for it. It is removed from the map before it is completed, so calls
+   * that arrive afterwards invoke the method again.
+   */
+  private static final class Flight extends CompletableFuture<Object> {
+    final ArgumentsKey key;
+    final Thread thread = Thread.currentThread();
+
+    Flight(ArgumentsKey key) {
+      this.key = key;
+    }
+  }
+}
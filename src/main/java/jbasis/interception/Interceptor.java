@@ -5,6 +5,11 @@ import jbasis.ioc.ServiceFactory;
 
 /**
  * Interceptors provide aspect oriented functionality to clases.
+ * <p>
+ * The container calls the InvocationContext overloads, which by
+ * default delegate to the overloads taking the proxy, target, method
+ * and args. Interceptors that keep per-call state in the
+ * InvocationContext can be marked {@link Stateless} and shared.
  */
 public interface Interceptor {
   /**
@@ -27,7 +32,9 @@ public interface Interceptor {
   boolean beforeInvoke(Object proxy, Object target, Method method, Object[] args);
 
   /**
-   * Executes after a method has been invoked.
+   * Executes after a method has been invoked. The afterInvoke of
+   * every Interceptor in the chain runs even if an earlier one throws;
+   * the first exception is then thrown to the caller.
    * 
    * @param proxy the proxy that wraps the target object
    * @param target the target object
@@ -48,4 +55,55 @@ public interface Interceptor {
    * @return true if the exception has been handled, otherwise false
    */
   boolean onError(Object proxy, Object target, Method method, Object[] args, Throwable t);
+
+  /**
+   * Executes before a method is invoked. An Interceptor that returns
+   * false may set the result returned to the caller on the context.
+   * 
+   * @param context the state of the call
+   * @return true to continue execution, otherwise false
+   */
+  default boolean beforeInvoke(InvocationContext context) {
+    return beforeInvoke(context.getProxy(), context.getTarget(), context.getMethod(),
+        context.getArguments());
+  }
+
+  /**
+   * Executes after a method has been invoked. The afterInvoke of
+   * every Interceptor in the chain runs even if an earlier one throws;
+   * the first exception is then thrown to the caller.
+   * 
+   * @param context the state of the call, holding the result
+   */
+  default void afterInvoke(InvocationContext context) {
+    afterInvoke(context.getProxy(), context.getTarget(), context.getMethod(),
+        context.getArguments(), context.getResult());
+  }
+
+  /**
+   * Executes if a method throws an exception. An Interceptor that 
+   * handles the exception may set the result returned to the caller 
+   * on the context. An Interceptor that throws replaces the exception
+   * passed to the interceptors after it.
+   * 
+   * @param context the state of the call
+   * @param t the exception describing the error condition
+   * @return true if the exception has been handled, otherwise false
+   */
+  default boolean onError(InvocationContext context, Throwable t) {
+    return onError(context.getProxy(), context.getTarget(), context.getMethod(),
+        context.getArguments(), t);
+  }
+
+  /**
+   * Executes once a call has completed, after its afterInvoke or
+   * onError, whether or not an error was handled. It runs exactly once
+   * for every call whose beforeInvoke returned true, so an Interceptor can
+   * release what it acquired for the call here even if an Interceptor
+   * declared after it handles an error by invoking the method again.
+   * 
+   * @param context the state of the call
+   */
+  default void onComplete(InvocationContext context) {
+  }
 }
@@ -0,0 +1,105 @@
+package jbasis.interception;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import jbasis.ioc.ServiceFactory;
+
+/**
+ * The state of a single intercepted call.
+ * <p>
+ * A context is created for every call and passed to each Interceptor
+ * in the chain, so interceptors can keep per-call state here instead
+ * of in their own fields and be shared as {@link Stateless}
+ * interceptors. Every Interceptor in the chain has its own attribute
+ * slots; the attribute methods always refer to the slots of the
+ * Interceptor currently being called.
+ */
+public interface InvocationContext {
+
+  /**
+   * @return the proxy that wraps the target object
+   */
+  Object getProxy();
+
+  /**
+   * @return the target object
+   */
+  Object getTarget();
+
+  /**
+   * @return the implementation method being invoked
+   */
+  Method getMethod();
+
+  /**
+   * @return the args passed to the method, null if there are none
+   */
+  Object[] getArguments();
+
+  /**
+   * @return the ServiceFactory of the container that created the proxy
+   */
+  ServiceFactory getServiceFactory();
+
+  /**
+   * Gets the executor of the container that created the proxy, on
+   * which methods annotated with {@link Async} run. Work submitted
+   * after the container was closed is rejected.
+   *
+   * @return the executor of the container
+   */
+  Executor getExecutor();
+
+  /**
+   * Gets the value that will be returned to the caller. This is the
+   * value returned by the method once it has been invoked, or the
+   * value set by an Interceptor that skipped the method or handled
+   * its error.
+   *
+   * @return the result of the call
+   */
+  Object getResult();
+
+  /**
+   * Sets the value that will be returned to the caller.
+   *
+   * @param result the result of the call
+   */
+  void setResult(Object result);
+
+  /**
+   * @return the object attribute of the current Interceptor, or null
+   */
+  Object getAttribute();
+
+  /**
+   * @param value the object attribute of the current Interceptor
+   */
+  void setAttribute(Object value);
+
+  /**
+   * @return the long attribute of the current Interceptor, or 0
+   */
+  long getLongAttribute();
+
+  /**
+   * @param value the long attribute of the current Interceptor
+   */
+  void setLongAttribute(long value);
+
+  /**
+   * Invokes the method on the target again with the same args. A
+   * method annotated with {@link Async} is submitted to the executor
+   * of the container, as it is by the proxy.
+   * <p>
+   * When an Interceptor rejected the call in beforeInvoke, the chain
+   * is run again from that Interceptor, so proceeding from onError
+   * cannot bypass an open circuit, a full bulkhead or a rate limit.
+   * Otherwise the method is invoked without going through the
+   * Interceptor chain.
+   *
+   * @return the value returned by the method
+   * @throws Throwable the exception thrown by the method
+   */
+  Object proceed() throws Throwable;
+}
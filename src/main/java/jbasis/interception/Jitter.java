@@ -0,0 +1,25 @@
+package jbasis.interception;
+
+/**
+ * How the backoff of a {@link Retry} is randomized so that callers
+ * that failed at the same time do not all retry at the same time.
+ */
+public enum Jitter {
+  /**
+   * Back off by exactly the configured interval.
+   */
+  NONE,
+
+  /**
+   * Back off by a random interval between zero and the configured
+   * interval.
+   */
+  FULL,
+
+  /**
+   * Back off by a random interval between the base interval and
+   * three times the previous backoff. The linear or exponential
+   * setting is not used.
+   */
+  DECORRELATED
+}
@@ -9,7 +9,14 @@ import java.lang.reflect.Method;
 import jbasis.logging.Level;
 import jbasis.logging.Logger;
 import jbasis.logging.LoggerFactory;
+import jbasis.metrics.MethodLatencies;
 
+/**
+ * Profiles calls to a method. The latency of every call, whether it
+ * returns or fails, is recorded in the histogram of the method in
+ * {@link MethodLatencies}, and calls that take longer than the
+ * threshold are logged.
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 @WithInterceptor(type = ProfileInterceptor.class)
@@ -21,46 +28,60 @@ public @interface Profile {
   long thresholdMilliseconds() default -1L;
 }
 
+@Stateless
 class ProfileInterceptor extends EmptyInterceptor {
+  private static final Object FAILED = new Object();
+
   private final Logger logger = LoggerFactory.get(getClass());
-  private Profile profile;
-  private long start;
+  private final Profile profile;
+  private final Level defaultLevel;
+  private final Level thresholdExceededLevel;
 
   public ProfileInterceptor(Profile profile) {
     this.profile = profile;
+    this.defaultLevel = Level.valueOf(profile.loggerDefaultPriority());
+    this.thresholdExceededLevel = Level.valueOf(profile.loggerThresholdExceededPriority());
   }
 
   @Override
-  public boolean beforeInvoke(Object proxy, Object target, Method method, Object[] args) {
-    String msg = String.format("Executing %s.%s", target, method.getName());
-    Level level = Level.valueOf(profile.loggerDefaultPriority());
-    logger.log(level, msg);
-    start = System.nanoTime();
+  public boolean beforeInvoke(InvocationContext context) {
+    logger.log(defaultLevel, "Executing {}.{}", context.getTarget(), 
+        context.getMethod().getName());
+    context.setLongAttribute(System.nanoTime());
     return true;
   }
 
   @Override
-  public boolean onError(Object proxy, Object target, Method method, Object[] args, 
-      Throwable throwable) {
+  public boolean onError(InvocationContext context, Throwable throwable) {
+    context.setAttribute(FAILED);
     return false;
   }
 
+  /**
+   * Records the call once it has returned or failed. A failure handled
+   * by an Interceptor before this one is still recorded as failed.
+   */
   @Override
-  public void afterInvoke(Object proxy, Object target, Method method, Object[] args, 
-      Object result) {
-    long elapsedMicros = (System.nanoTime() - start) / 1000;
+  public void onComplete(InvocationContext context) {
+    long elapsedNanos = System.nanoTime() - context.getLongAttribute();
+    Method method = context.getMethod();
+    MethodLatencies.get(method).record(elapsedNanos);
+    long elapsedMicros = elapsedNanos / 1000;
     long elapsedMillis = elapsedMicros / 1000;
     long threshold = profile.thresholdMilliseconds();
     threshold = threshold < 0 ? 0 : threshold;
-    String thresholdConfig = threshold > 0 ? String.format(" (threshold = %s ms)", threshold) : "";
-    String msg = String.format("Executed %s.%s in %s μs%s", target,
-        method.getName(), elapsedMicros, thresholdConfig);
-    if (threshold > 0 && elapsedMillis > threshold) {
-      Level level = Level.valueOf(profile.loggerThresholdExceededPriority());
-      logger.log(level, msg);
+    Level level = threshold > 0 && elapsedMillis > threshold 
+        ? thresholdExceededLevel : defaultLevel;
+    if (!logger.isEnabled(level)) {
+      return;
+    }
+    String outcome = context.getAttribute() == FAILED ? "Failed" : "Executed";
+    if (threshold > 0) {
+      logger.log(level, "{} {}.{} in {} μs (threshold = {} ms)", outcome, context.getTarget(),
+          method.getName(), elapsedMicros, threshold);
     } else {
-      Level level = Level.valueOf(profile.loggerDefaultPriority());
-      logger.log(level, msg);
+      logger.log(level, "{} {}.{} in {} μs", outcome, context.getTarget(), method.getName(), 
+          elapsedMicros);
     }
   }
 }
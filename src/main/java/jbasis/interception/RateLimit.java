@@ -0,0 +1,237 @@
+package jbasis.interception;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jbasis.util.JBasisException;
+
+/**
+ * Limits the rate of calls to a method with a token bucket.
+ * <p>
+ * The bucket holds up to {@link #burst()} permits and refills at
+ * {@link #permitsPerSecond()}. A call that finds the bucket empty
+ * waits on the calling thread until a permit is available if that
+ * takes no longer than {@link #maxWaitMilliseconds()}, and is
+ * otherwise rejected with a {@link RateLimitExceededException}, as it
+ * is when it is interrupted while waiting. Calls to methods returning
+ * a CompletionStage never wait; they get a failed CompletableFuture
+ * instead.
+ * <p>
+ * There is one bucket per method on instances of the same
+ * implementation class, or one per distinct value of the argument at
+ * {@link #keyArgument()}. Keyed buckets that have been full for a
+ * while are removed a few at a time as new keys are seen.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = RateLimitInterceptor.class)
+public @interface RateLimit {
+
+  /**
+   * Sets the rate at which permits are added to the bucket.
+   * @return the number of permits per second
+   */
+  double permitsPerSecond();
+
+  /**
+   * Sets the number of permits the bucket holds, the number of calls
+   * allowed at once after a quiet period.
+   * @return the size of the bucket
+   */
+  int burst() default 1;
+
+  /**
+   * Sets how long a call waits for a permit.
+   * @return the maximum number of milliseconds to wait
+   */
+  long maxWaitMilliseconds() default 0;
+
+  /**
+   * Sets the index of the argument that selects the bucket. A
+   * negative value means all calls share one bucket. The index is
+   * checked against the parameters of the method when its interceptor
+   * chain is built.
+   * @return the index of the key argument
+   */
+  int keyArgument() default -1;
+}
+
+/**
+ * Implements the token bucket as a generic cell rate algorithm: the
+ * state of a bucket is the time at which it will be full again, so
+ * taking a permit is a single CAS that moves that time forward by one
+ * interval and no thread is needed to refill it.
+ * <p>
+ * A keyed bucket is removed by moving its time to a marker with a CAS
+ * from a time at least one interval in the past, so a call that takes
+ * a permit from it concurrently either wins and keeps the bucket, or
+ * sees the marker and takes its permit from a new bucket.
+ */
+@Stateless
+class RateLimitInterceptor extends EmptyInterceptor {
+  private static final Object NULL_KEY = new Object();
+  private static final int PRUNE_BATCH = 4;
+  private static final long REMOVED = Long.MIN_VALUE;
+
+  private final RateLimit rateLimit;
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final long maxWaitNanos;
+
+  private final AtomicLong bucket;
+  private final ConcurrentMap<Object, AtomicLong> buckets;
+  private final AtomicBoolean pruning = new AtomicBoolean();
+  private Iterator<Map.Entry<Object, AtomicLong>> sweep;
+  private volatile RateLimitExceededException rejection;
+
+  public RateLimitInterceptor(RateLimit rateLimit) {
+    this.rateLimit = rateLimit;
+    double permitsPerSecond = rateLimit.permitsPerSecond();
+    if (!(permitsPerSecond > 0)) {
+      throw new JBasisException("permitsPerSecond must be positive but was " + permitsPerSecond);
+    }
+    this.intervalNanos = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond), 1L);
+    this.toleranceNanos = intervalNanos * Math.max(rateLimit.burst(), 1);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(rateLimit.maxWaitMilliseconds(), 0));
+
+    this.bucket = rateLimit.keyArgument() < 0 ? new AtomicLong(System.nanoTime()) : null;
+    this.buckets = rateLimit.keyArgument() < 0 ? null : new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    boolean async = AsyncResults.isAsync(context.getMethod());
+    long wait;
+    do {
+      wait = acquire(bucket(context), async ? 0 : maxWaitNanos);
+    } while (wait == REMOVED);
+    if (wait < 0 || (wait > 0 && !sleep(wait))) {
+      return reject(context, async);
+    }
+    return true;
+  }
+
+  /**
+   * Takes a permit from a bucket.
+   *
+   * @param bucket the time at which the bucket is full again
+   * @param maxWait the number of nanoseconds the caller may wait
+   * @return the number of nanoseconds until the permit is available,
+   *     -1 if that is more than the caller may wait, or
+   *     {@link #REMOVED} if the bucket has been removed
+   */
+  private long acquire(AtomicLong bucket, long maxWait) {
+    while (true) {
+      long now = System.nanoTime();
+      long full = bucket.get();
+      if (full == REMOVED) {
+        return REMOVED;
+      }
+      long next = (full - now > 0 ? full : now) + intervalNanos;
+      long wait = next - now - toleranceNanos;
+      if (wait > maxWait) {
+        return -1;
+      }
+      if (bucket.compareAndSet(full, next)) {
+        return Math.max(wait, 0);
+      }
+    }
+  }
+
+  private AtomicLong bucket(InvocationContext context) {
+    if (buckets == null) {
+      return bucket;
+    }
+    Object key = context.getArguments()[rateLimit.keyArgument()];
+    if (key == null) {
+      key = NULL_KEY;
+    }
+    AtomicLong keyed = buckets.get(key);
+    if (keyed == null || keyed.get() == REMOVED) {
+      if (keyed == null) {
+        prune();
+      } else {
+        buckets.remove(key, keyed);
+      }
+      keyed = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+    }
+    return keyed;
+  }
+
+  /**
+   * Looks at the next few buckets and removes those that have been
+   * full for at least one interval, which are the same as new ones. The
+   * buckets are visited in turn across calls, so a call does a bounded
+   * amount of work however many keys there are, and calls that find
+   * another one pruning skip it.
+   */
+  private void prune() {
+    if (!pruning.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long now = System.nanoTime();
+      Iterator<Map.Entry<Object, AtomicLong>> entries = sweep;
+      for (int i = 0; i < PRUNE_BATCH; i++) {
+        if (entries == null || !entries.hasNext()) {
+          entries = buckets.entrySet().iterator();
+          if (!entries.hasNext()) {
+            break;
+          }
+        }
+        Map.Entry<Object, AtomicLong> entry = entries.next();
+        AtomicLong idle = entry.getValue();
+        long full = idle.get();
+        if (full != REMOVED && now - full >= intervalNanos && idle.compareAndSet(full, REMOVED)) {
+          buckets.remove(entry.getKey(), idle);
+        }
+      }
+      sweep = entries;
+    } finally {
+      pruning.set(false);
+    }
+  }
+
+  private boolean reject(InvocationContext context, boolean async) {
+    RateLimitExceededException exception = rejection;
+    if (exception == null) {
+      Method method = context.getMethod();
+      exception = new RateLimitExceededException("Rate limit exceeded for "
+          + method.getDeclaringClass().getName() + "." + method.getName());
+      rejection = exception;
+    }
+    if (async) {
+      CompletableFuture<Object> failed = new CompletableFuture<>();
+      failed.completeExceptionally(exception);
+      context.setResult(failed);
+      return false;
+    }
+    throw exception;
+  }
+
+  /**
+   * Waits for a permit.
+   *
+   * @return false if the thread was interrupted
+   */
+  private static boolean sleep(long nanos) {
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
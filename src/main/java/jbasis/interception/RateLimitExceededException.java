@@ -0,0 +1,18 @@
+package jbasis.interception;
+
+import jbasis.util.JBasisException;
+
+/**
+ * Thrown, or used to fail the returned CompletableFuture, when a
+ * call exceeds the rate of a {@link RateLimit}.
+ * <p>
+ * It does not capture a stack trace and one instance is shared by all
+ * calls rejected by the same rate limit.
+ */
+public class RateLimitExceededException extends JBasisException {
+  private static final long serialVersionUID = 1L;
+
+  public RateLimitExceededException(String message) {
+    super(message, null, false, false);
+  }
+}
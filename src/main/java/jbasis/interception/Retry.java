@@ -4,12 +4,25 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import jbasis.logging.Logger;
 import jbasis.logging.LoggerFactory;
 
+/**
+ * Retries a method that fails.
+ * <p>
+ * Methods declared to return a CompletionStage, CompletableFuture or
+ * Future are retried without blocking: when the returned stage fails, the
+ * next try is scheduled after the backoff and the caller receives a
+ * CompletableFuture that completes with the first successful try or
+ * the failure of the last one. Tries of a method annotated with
+ * {@link Async} run on the executor of the container, like the first
+ * one. Other methods sleep on the calling thread between tries.
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 @WithInterceptor(type = RetryInterceptor.class)
@@ -32,41 +45,61 @@ public @interface Retry {
    * @return true or false
    */
   boolean exponentialBackOff() default false;
+
+  /**
+   * Sets the upper bound of the backoff. A negative value means the 
+   * backoff is not bounded.
+   * @return the maximum number of backoff milliseconds
+   */
+  long maxBackOffIntervalMilliseconds() default -1L;
+
+  /**
+   * Sets how the backoff is randomized.
+   * @return the jitter
+   */
+  Jitter jitter() default Jitter.NONE;
 }
 
+@Stateless
 class RetryInterceptor extends EmptyInterceptor {
   private final Logger logger = LoggerFactory.get(getClass());
-  private int tries = 1;
-  private Retry retry;
+  private final Retry retry;
 
   public RetryInterceptor(Retry retry) {
     this.retry = retry;
   }
 
   @Override
-  public boolean onError(Object proxy, Object target, Method method, Object[] args, 
-      Throwable throwable) {
-    Exception lastThrowable = new Exception(new Exception("default"));
+  public boolean onError(InvocationContext context, Throwable throwable) {
     logger.warn("Failed on first attempt. Will try a total of {} times.", retry.tries());
 
     logger.debug("Initiating {} backoff strategy", retry.exponentialBackOff() 
         ? "exponential" : "linear");
 
+    if (AsyncResults.isAsync(context.getMethod())) {
+      CompletableFuture<Object> promise = new CompletableFuture<>();
+      retryAsync(context, promise, throwable, 1, retry.backOffIntervalMilliseconds());
+      context.setResult(promise);
+      return true;
+    }
+
+    Throwable lastThrowable = throwable;
+    long backoff = retry.backOffIntervalMilliseconds();
+    int tries = 1;
     while (true) {
-      if (tries == retry.tries()) {
-        String msg = String.format("Failed on try %s. %s", tries, 
-            lastThrowable.getCause().getMessage());
-        logger.error(msg, lastThrowable.getCause());
+      if (tries >= retry.tries()) {
+        logger.error("Failed on try {}. {}", tries, lastThrowable.getMessage(), lastThrowable);
         return false;
       }
 
-      backoff();
+      backoff = backoff(tries, backoff);
+      sleep(backoff);
   
       try {
-        method.invoke(target, args);
+        context.setResult(context.proceed());
         logger.info("Succeeded on try {}", tries + 1);
         return true;
-      } catch (Exception t) {
+      } catch (Throwable t) {
         lastThrowable = t;
       }
 
@@ -74,14 +107,68 @@ class RetryInterceptor extends EmptyInterceptor {
     }
   }
 
-  private void backoff() {
-    try {
-      long backoff = retry.backOffIntervalMilliseconds();
-      if (retry.exponentialBackOff()) {
-        backoff = backoff * (int)Math.pow(2, tries - (double)1);
-      } else {
-        backoff = backoff * tries;
+  private void retryAsync(InvocationContext context, CompletableFuture<Object> promise,
+      Throwable lastThrowable, int tries, long previousBackoff) {
+    if (tries >= retry.tries()) {
+      logger.error("Failed on try {}. {}", tries, lastThrowable.getMessage(), lastThrowable);
+      promise.completeExceptionally(lastThrowable);
+      return;
+    }
+
+    long backoff = backoff(tries, previousBackoff);
+    logger.debug("Backing off by {} ms", backoff);
+    CompletableFuture.runAsync(() -> {
+      CompletionStage<?> stage;
+      try {
+        stage = AsyncResults.toStage(context.proceed(), context.getExecutor());
+      } catch (Throwable t) {
+        retryAsync(context, promise, t, tries + 1, backoff);
+        return;
       }
+      stage.whenComplete((value, error) -> {
+        if (error == null) {
+          logger.info("Succeeded on try {}", tries + 1);
+          promise.complete(value);
+        } else {
+          retryAsync(context, promise, AsyncResults.unwrap(error), tries + 1, backoff);
+        }
+      });
+    }, CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Computes the backoff before the next try.
+   *
+   * @param tries the number of tries so far
+   * @param previousBackoff the previous backoff, or the base interval
+   * @return the backoff in milliseconds
+   */
+  long backoff(int tries, long previousBackoff) {
+    long base = Math.max(retry.backOffIntervalMilliseconds(), 0);
+    long max = retry.maxBackOffIntervalMilliseconds() < 0 
+        ? Long.MAX_VALUE : retry.maxBackOffIntervalMilliseconds();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    if (retry.jitter() == Jitter.DECORRELATED) {
+      long upper = Math.min(multiply(Math.max(previousBackoff, base), 3), max);
+      return upper <= base ? Math.min(base, max) : random.nextLong(base, upper);
+    }
+
+    long backoff;
+    if (retry.exponentialBackOff()) {
+      backoff = multiply(base, tries > 62 ? Long.MAX_VALUE : 1L << (tries - 1));
+    } else {
+      backoff = multiply(base, tries);
+    }
+    backoff = Math.min(backoff, max);
+    if (retry.jitter() == Jitter.FULL && backoff > 0) {
+      backoff = random.nextLong(backoff);
+    }
+    return backoff;
+  }
+
+  private void sleep(long backoff) {
+    try {
       logger.debug("Backing off by {} ms", backoff);
       TimeUnit.MILLISECONDS.sleep(backoff);
     } catch (InterruptedException e) {
@@ -89,4 +176,10 @@ class RetryInterceptor extends EmptyInterceptor {
       Thread.currentThread().interrupt();
     }  
   }
-}
\ No newline at end of file
+
+  private static long multiply(long value, long factor) {
+    long high = Math.multiplyHigh(value, factor);
+    long low = value * factor;
+    return high != 0 || low < 0 ? Long.MAX_VALUE : low;
+  }
+}
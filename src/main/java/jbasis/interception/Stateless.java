@@ -0,0 +1,25 @@
+package jbasis.interception;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an Interceptor as safe to share.
+ * <p>
+ * By default an Interceptor is instantiated for every intercepted
+ * call so that it may keep per-call state in instance fields. A
+ * Stateless Interceptor is instantiated once per intercepted method
+ * and reused across invocations, threads and proxy instances, so it
+ * must not keep per-call state in its fields. Per-call state belongs
+ * in the attributes of the {@link InvocationContext}.
+ * <p>
+ * Because a Stateless Interceptor outlives any single container
+ * scope, setServiceFactory is not called on it. The ServiceFactory
+ * is available from the InvocationContext instead.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Stateless {
+}
@@ -0,0 +1,138 @@
+package jbasis.interception;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import jbasis.util.JBasisException;
+
+/**
+ * Bounds how long a call to a method may take.
+ * <p>
+ * A blocking method runs on the calling thread, which is interrupted
+ * when the time is up. Cancellation is cooperative: the caller gets a
+ * {@link TimeoutExceededException} as soon as the method returns or
+ * throws, whether or not it responded to the interrupt, and its result
+ * is discarded.
+ * <p>
+ * A method returning a CompletionStage, CompletableFuture or Future is
+ * invoked directly by this interceptor, so no interceptor may be
+ * declared after {@code @Timeout} on it; the container rejects such a
+ * method when it is first called. A method annotated with
+ * {@link Async} is still dispatched to the executor of the container.
+ * The caller gets a CompletableFuture that fails with a
+ * {@link TimeoutExceededException} when the time is up, and the
+ * returned stage is cancelled if it is a Future. Both happen on a
+ * pool thread, so callbacks of the caller never run on the timer
+ * thread.
+ * <p>
+ * Deadlines are kept by one timer thread shared by all methods, with a
+ * resolution of a few milliseconds. The thread only runs while a
+ * deadline is pending.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = TimeoutInterceptor.class)
+public @interface Timeout {
+
+  /**
+   * Sets how long a call may take.
+   * @return the number of milliseconds
+   */
+  long milliseconds();
+}
+
+@Stateless
+class TimeoutInterceptor extends EmptyInterceptor {
+  private final Timeout timeout;
+  private final long timeoutNanos;
+
+  public TimeoutInterceptor(Timeout timeout) {
+    this.timeout = timeout;
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(timeout.milliseconds(), 0));
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    if (AsyncResults.isAsync(context.getMethod())) {
+      context.setResult(invokeAsync(context));
+      return false;
+    }
+    Thread caller = Thread.currentThread();
+    context.setAttribute(TimerWheel.shared().schedule(caller::interrupt, timeoutNanos));
+    return true;
+  }
+
+  @Override
+  public void afterInvoke(InvocationContext context) {
+    if (expired(context)) {
+      throw timedOut(context.getMethod(), null);
+    }
+  }
+
+  @Override
+  public boolean onError(InvocationContext context, Throwable throwable) {
+    if (expired(context)) {
+      throw timedOut(context.getMethod(), throwable);
+    }
+    return false;
+  }
+
+  /**
+   * Cancels the deadline of a blocking call. If it has already passed,
+   * waits for the interrupt to be delivered and clears it, so it does
+   * not leak to the caller.
+   */
+  private static boolean expired(InvocationContext context) {
+    TimerWheel.Timeout deadline = (TimerWheel.Timeout) context.getAttribute();
+    if (deadline == null || deadline.cancel()) {
+      return false;
+    }
+    deadline.awaitExpired();
+    Thread.interrupted();
+    return true;
+  }
+
+  private CompletableFuture<Object> invokeAsync(InvocationContext context) {
+    CompletionStage<?> stage;
+    try {
+      stage = AsyncResults.toStage(context.proceed(), context.getExecutor());
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new JBasisException(t.getMessage(), t);
+    }
+    CompletableFuture<Object> promise = new CompletableFuture<>();
+
+    Method method = context.getMethod();
+    TimerWheel.Timeout deadline = TimerWheel.shared().schedule(
+        () -> CompletableFuture.runAsync(() -> {
+          if (stage instanceof Future) {
+            ((Future<?>) stage).cancel(true);
+          }
+          promise.completeExceptionally(timedOut(method, null));
+        }), timeoutNanos);
+    stage.whenComplete((value, error) -> {
+      if (!deadline.cancel()) {
+        return;
+      }
+      if (error == null) {
+        promise.complete(value);
+      } else {
+        promise.completeExceptionally(AsyncResults.unwrap(error));
+      }
+    });
+    return promise;
+  }
+
+  private TimeoutExceededException timedOut(Method method, Throwable cause) {
+    return new TimeoutExceededException(method.getDeclaringClass().getName() + "."
+        + method.getName() + " did not complete within " + timeout.milliseconds() + " ms", cause);
+  }
+}
@@ -0,0 +1,19 @@
+package jbasis.interception;
+
+import jbasis.util.JBasisException;
+
+/**
+ * Thrown, or used to fail the returned CompletableFuture, when a
+ * call takes longer than its {@link Timeout}.
+ */
+public class TimeoutExceededException extends JBasisException {
+  private static final long serialVersionUID = 1L;
+
+  public TimeoutExceededException(String message) {
+    super(message);
+  }
+
+  public TimeoutExceededException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,253 @@
+package jbasis.interception;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import jbasis.logging.Logger;
+import jbasis.logging.LoggerFactory;
+
+/**
+ * A hashed timer wheel that runs short tasks on a single daemon thread.
+ * <p>
+ * Scheduling a task adds it to a concurrent queue and cancelling it is
+ * a CAS, so neither takes a lock or wakes the timer thread while other
+ * tasks are waiting. Once per tick the thread moves new tasks into the
+ * bucket of the tick they are due in and runs the tasks of the current
+ * bucket whose round has come. Tasks run up to one tick late and must
+ * not block.
+ * <p>
+ * The thread only ticks while tasks are waiting. It is started by the
+ * first task scheduled, parks once every task has run or been
+ * cancelled, and exits if none is scheduled within a second, so no
+ * thread is left behind once the last container is closed and its
+ * calls have completed. The next task starts a new thread.
+ */
+final class TimerWheel {
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+  private static final long KEEP_ALIVE_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final int WHEEL_SIZE = 512;
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+  private static final class Holder {
+    static final TimerWheel SHARED = new TimerWheel("jbasis-timer");
+  }
+
+  private final Logger logger = LoggerFactory.get(getClass());
+  private final String name;
+  private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final Timeout[] buckets = new Timeout[WHEEL_SIZE];
+  private final long startNanos = System.nanoTime();
+  private Thread worker;
+  private long tick;
+
+  private TimerWheel(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @return the timer wheel shared by all interceptors
+   */
+  static TimerWheel shared() {
+    return Holder.SHARED;
+  }
+
+  /**
+   * Schedules a task.
+   *
+   * @param task the task, which must not block
+   * @param delayNanos the delay after which the task runs
+   * @return the handle with which the task is cancelled
+   */
+  Timeout schedule(Runnable task, long delayNanos) {
+    Timeout timeout = new Timeout(this, task,
+        System.nanoTime() - startNanos + Math.max(delayNanos, 0));
+    // counted before it is queued, so the thread does not exit while
+    // it is on its way in
+    boolean idle = waiting.getAndIncrement() == 0;
+    pending.add(timeout);
+    if (idle) {
+      wake();
+    }
+    return timeout;
+  }
+
+  private synchronized void wake() {
+    if (worker == null) {
+      worker = new Thread(this::run, name);
+      worker.setDaemon(true);
+      worker.start();
+    } else {
+      LockSupport.unpark(worker);
+    }
+  }
+
+  /**
+   * Exits the thread unless a task was scheduled while it was idle.
+   */
+  private synchronized boolean exit() {
+    if (waiting.get() > 0) {
+      return false;
+    }
+    worker = null;
+    return true;
+  }
+
+  private void run() {
+    tick = (System.nanoTime() - startNanos) / TICK_NANOS;
+    while (true) {
+      if (waiting.get() == 0) {
+        if (!idle()) {
+          return;
+        }
+        tick = (System.nanoTime() - startNanos) / TICK_NANOS;
+      }
+      long deadline = (tick + 1) * TICK_NANOS;
+      long now;
+      while ((now = System.nanoTime() - startNanos) < deadline) {
+        LockSupport.parkNanos(deadline - now);
+      }
+      transfer();
+      expire(buckets[(int) (tick & (WHEEL_SIZE - 1))], now);
+      tick++;
+    }
+  }
+
+  /**
+   * Parks while no task is waiting. The buckets only hold cancelled
+   * tasks by now, so they are dropped rather than kept reachable.
+   *
+   * @return true once a task is scheduled, false if the thread exits
+   */
+  private boolean idle() {
+    Arrays.fill(buckets, null);
+    long deadline = System.nanoTime() + KEEP_ALIVE_NANOS;
+    while (waiting.get() == 0) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        if (exit()) {
+          return false;
+        }
+        break;
+      }
+      LockSupport.parkNanos(this, remaining);
+    }
+    return true;
+  }
+
+  private void transfer() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      Timeout timeout = pending.poll();
+      if (timeout == null) {
+        return;
+      }
+      if (timeout.state.get() != Timeout.WAITING) {
+        continue;
+      }
+      long due = timeout.deadlineNanos / TICK_NANOS;
+      timeout.rounds = (due - tick) / WHEEL_SIZE;
+      int index = (int) (Math.max(due, tick) & (WHEEL_SIZE - 1));
+      timeout.next = buckets[index];
+      if (timeout.next != null) {
+        timeout.next.prev = timeout;
+      }
+      buckets[index] = timeout;
+    }
+  }
+
+  private void expire(Timeout timeout, long now) {
+    while (timeout != null) {
+      Timeout next = timeout.next;
+      if (timeout.state.get() != Timeout.WAITING) {
+        remove(timeout);
+      } else if (timeout.rounds <= 0 && timeout.deadlineNanos <= now) {
+        remove(timeout);
+        timeout.expire();
+      } else {
+        timeout.rounds--;
+      }
+      timeout = next;
+    }
+  }
+
+  private void remove(Timeout timeout) {
+    if (timeout.prev != null) {
+      timeout.prev.next = timeout.next;
+    } else {
+      buckets[(int) (tick & (WHEEL_SIZE - 1))] = timeout.next;
+    }
+    if (timeout.next != null) {
+      timeout.next.prev = timeout.prev;
+    }
+    timeout.prev = null;
+    timeout.next = null;
+  }
+
+  /**
+   * A scheduled task. It is either cancelled by the caller or expired
+   * by the timer thread, whichever comes first.
+   */
+  static final class Timeout {
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRING = 2;
+    private static final int EXPIRED = 3;
+
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private final TimerWheel wheel;
+    private final Runnable task;
+    private final long deadlineNanos;
+
+    // owned by the timer thread
+    private long rounds;
+    private Timeout prev;
+    private Timeout next;
+
+    private Timeout(TimerWheel wheel, Runnable task, long deadlineNanos) {
+      this.wheel = wheel;
+      this.task = task;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Cancels the task unless it has started.
+     *
+     * @return true if the task will not run, false if it has started
+     */
+    boolean cancel() {
+      if (!state.compareAndSet(WAITING, CANCELLED)) {
+        return false;
+      }
+      wheel.waiting.decrementAndGet();
+      return true;
+    }
+
+    /**
+     * Waits for a task that has started to finish. Tasks are short, so
+     * this spins.
+     */
+    void awaitExpired() {
+      while (state.get() == EXPIRING) {
+        Thread.onSpinWait();
+      }
+    }
+
+    private void expire() {
+      if (!state.compareAndSet(WAITING, EXPIRING)) {
+        return;
+      }
+      wheel.waiting.decrementAndGet();
+      try {
+        task.run();
+      } catch (RuntimeException | Error e) {
+        wheel.logger.warn("Timer task failed. {}", e.getMessage(), e);
+      } finally {
+        state.set(EXPIRED);
+      }
+    }
+  }
+}
@@ -0,0 +1,360 @@
+package jbasis.interception;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded concurrent cache with a simplified W-TinyLFU eviction
+ * policy.
+ * <p>
+ * Entries live in a ConcurrentHashMap, so lookups never block. The
+ * policy is kept under a lock: new entries enter a small LRU window,
+ * and an entry leaving the window is only admitted to the main space
+ * if a frequency sketch has seen its key more often than the key it
+ * would replace. The main space is a segmented LRU in which entries
+ * read on probation are promoted to a protected segment.
+ * <p>
+ * Reads update the policy only if the lock is free; a read that finds
+ * it held skips the bookkeeping rather than waiting, which loses a
+ * little precision under contention but keeps hits lock-free.
+ */
+final class TinyLfuCache<K, V> {
+  private static final int NONE = -1;
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+  private final ReentrantLock policyLock = new ReentrantLock();
+  private final LongAdder evictions = new LongAdder();
+  private final FrequencySketch sketch;
+
+  private final int maximumSize;
+  private final int windowMaximum;
+  private final int mainMaximum;
+  private final int protectedMaximum;
+
+  // guarded by policyLock
+  private final AccessQueue<K, V> window = new AccessQueue<>();
+  private final AccessQueue<K, V> probation = new AccessQueue<>();
+  private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+  private int windowSize;
+  private int mainSize;
+  private int protectedSize;
+
+  TinyLfuCache(int maximumSize) {
+    this.maximumSize = Math.max(maximumSize, 1);
+    this.windowMaximum = this.maximumSize == 1 ? 1 : Math.max(this.maximumSize / 100, 1);
+    this.mainMaximum = this.maximumSize - windowMaximum;
+    this.protectedMaximum = mainMaximum * 8 / 10;
+    this.sketch = new FrequencySketch(this.maximumSize);
+  }
+
+  /**
+   * Gets the entry of a key and records the read.
+   *
+   * @param key the key
+   * @return the entry, or null if there is none
+   */
+  Node<K, V> get(K key) {
+    Node<K, V> node = data.get(key);
+    if (node != null && policyLock.tryLock()) {
+      try {
+        onRead(node);
+      } finally {
+        policyLock.unlock();
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Adds or replaces the entry of a key and evicts entries if the
+   * cache is full.
+   *
+   * @param key the key
+   * @param value the value
+   * @param nanos the nanoTime at which the value was computed
+   */
+  void put(K key, V value, long nanos) {
+    Node<K, V> node = new Node<>(key, value, nanos);
+    Node<K, V> prior = data.put(key, node);
+    policyLock.lock();
+    try {
+      if (prior != null) {
+        unlink(prior);
+      }
+      sketch.increment(node.hash);
+      // a put that raced with a newer one must not link its stale node
+      if (data.get(key) == node) {
+        node.queue = WINDOW;
+        window.linkLast(node);
+        windowSize++;
+        evict();
+      }
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * Removes an entry unless it has been replaced.
+   *
+   * @param key the key
+   * @param node the entry
+   */
+  void remove(K key, Node<K, V> node) {
+    if (data.remove(key, node)) {
+      policyLock.lock();
+      try {
+        unlink(node);
+      } finally {
+        policyLock.unlock();
+      }
+    }
+  }
+
+  int size() {
+    return data.size();
+  }
+
+  long evictionCount() {
+    return evictions.sum();
+  }
+
+  private void onRead(Node<K, V> node) {
+    sketch.increment(node.hash);
+    switch (node.queue) {
+      case WINDOW:
+        window.moveToBack(node);
+        break;
+      case PROBATION:
+        probation.unlink(node);
+        node.queue = PROTECTED;
+        protectedQueue.linkLast(node);
+        protectedSize++;
+        while (protectedSize > protectedMaximum) {
+          Node<K, V> demoted = protectedQueue.first();
+          protectedQueue.unlink(demoted);
+          protectedSize--;
+          demoted.queue = PROBATION;
+          probation.linkLast(demoted);
+        }
+        break;
+      case PROTECTED:
+        protectedQueue.moveToBack(node);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Moves entries that overflow the window into the main space, where
+   * an entry is admitted only if its key is used more often than the
+   * key of the entry it would replace.
+   */
+  private void evict() {
+    while (windowSize > windowMaximum) {
+      Node<K, V> candidate = window.first();
+      window.unlink(candidate);
+      windowSize--;
+      if (mainSize < mainMaximum) {
+        candidate.queue = PROBATION;
+        probation.linkLast(candidate);
+        mainSize++;
+        continue;
+      }
+      Node<K, V> victim = probation.isEmpty() ? protectedQueue.first() : probation.first();
+      if (victim != null && sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+        unlink(victim);
+        evict(victim);
+        candidate.queue = PROBATION;
+        probation.linkLast(candidate);
+        mainSize++;
+      } else {
+        candidate.queue = NONE;
+        evict(candidate);
+      }
+    }
+  }
+
+  private void evict(Node<K, V> node) {
+    if (data.remove(node.key, node)) {
+      evictions.increment();
+    }
+  }
+
+  private void unlink(Node<K, V> node) {
+    switch (node.queue) {
+      case WINDOW:
+        window.unlink(node);
+        windowSize--;
+        break;
+      case PROBATION:
+        probation.unlink(node);
+        mainSize--;
+        break;
+      case PROTECTED:
+        protectedQueue.unlink(node);
+        protectedSize--;
+        mainSize--;
+        break;
+      default:
+        break;
+    }
+    node.queue = NONE;
+  }
+
+  /**
+   * An entry of the cache. The value and the time it was computed may
+   * be replaced by a refresh.
+   */
+  static final class Node<K, V> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Node> REFRESHING =
+        AtomicIntegerFieldUpdater.newUpdater(Node.class, "refreshing");
+
+    final K key;
+    final int hash;
+    volatile V value;
+    volatile long writeNanos;
+    private volatile int refreshing;
+
+    // guarded by policyLock
+    int queue = NONE;
+    Node<K, V> prev;
+    Node<K, V> next;
+
+    Node(K key, V value, long writeNanos) {
+      this.key = key;
+      this.hash = key == null ? 0 : FrequencySketch.spread(key.hashCode());
+      this.value = value;
+      this.writeNanos = writeNanos;
+    }
+
+    /**
+     * @return true if the caller should refresh the entry, false if
+     *     another caller already is
+     */
+    boolean startRefresh() {
+      return REFRESHING.compareAndSet(this, 0, 1);
+    }
+
+    void refreshed(V value, long nanos) {
+      this.value = value;
+      this.writeNanos = nanos;
+      this.refreshing = 0;
+    }
+
+    void refreshFailed() {
+      this.refreshing = 0;
+    }
+  }
+
+  /**
+   * A doubly-linked list of entries from least to most recently used.
+   */
+  private static final class AccessQueue<K, V> {
+    private final Node<K, V> head = new Node<>(null, null, 0);
+
+    AccessQueue() {
+      head.prev = head;
+      head.next = head;
+    }
+
+    boolean isEmpty() {
+      return head.next == head;
+    }
+
+    Node<K, V> first() {
+      return isEmpty() ? null : head.next;
+    }
+
+    void linkLast(Node<K, V> node) {
+      node.prev = head.prev;
+      node.next = head;
+      head.prev.next = node;
+      head.prev = node;
+    }
+
+    void unlink(Node<K, V> node) {
+      node.prev.next = node.next;
+      node.next.prev = node.prev;
+      node.prev = null;
+      node.next = null;
+    }
+
+    void moveToBack(Node<K, V> node) {
+      unlink(node);
+      linkLast(node);
+    }
+  }
+
+  /**
+   * A count-min sketch of 4-bit counters that estimates how often a
+   * key has been used. All counters are halved once the number of
+   * increments reaches ten times the size of the cache, so old
+   * popularity fades.
+   */
+  static final class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+      int length = Integer.highestOneBit(Math.max(maximumSize, 8) - 1) << 1;
+      this.table = new long[length];
+      this.tableMask = length - 1;
+      this.sampleSize = maximumSize > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : maximumSize * 10;
+    }
+
+    static int spread(int hashCode) {
+      int h = hashCode * 0x9e3779b9;
+      return h ^ (h >>> 16);
+    }
+
+    int frequency(int hash) {
+      int frequency = 15;
+      for (int i = 0; i < 4; i++) {
+        frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> shiftOf(hash, i)) & 15L));
+      }
+      return frequency;
+    }
+
+    void increment(int hash) {
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        int index = indexOf(hash, i);
+        int shift = shiftOf(hash, i);
+        if (((table[index] >>> shift) & 15L) != 15L) {
+          table[index] += 1L << shift;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        for (int i = 0; i < table.length; i++) {
+          table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+      }
+    }
+
+    private int indexOf(int hash, int i) {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return (int) h & tableMask;
+    }
+
+    private static int shiftOf(int hash, int i) {
+      return ((hash >>> (i << 3)) & 15) << 2;
+    }
+  }
+}
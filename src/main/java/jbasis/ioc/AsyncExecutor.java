@@ -0,0 +1,192 @@
+package jbasis.ioc;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The executor on which methods annotated with
+ * {@link jbasis.interception.Async} run. Interceptors also use it
+ * for background work through
+ * {@link jbasis.interception.InvocationContext#getExecutor()}.
+ * <p>
+ * It is owned by a Root Scope container and shared with its scopes.
+ * The ExecutorService is created on the first call, so containers
+ * without async methods start no threads, and it is shut down when
+ * the container is closed.
+ */
+final class AsyncExecutor implements Executor {
+
+  /** The threads of the default executor on runtimes without virtual threads. */
+  static final int DEFAULT_THREADS = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+
+  /** The queue capacity of the default executor on runtimes without virtual threads. */
+  static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  private static final AtomicInteger THREADS = new AtomicInteger();
+
+  private final Supplier<ExecutorService> factory;
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile ExecutorService executor;
+  private volatile boolean closed;
+
+  AsyncExecutor(Supplier<ExecutorService> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Submits an invocation.
+   *
+   * @param invoker the invoker of the method
+   * @param target the object the method is invoked on
+   * @param args the method arguments
+   * @return a future that completes with the result of the method, or
+   *     with the stage it returns
+   */
+  CompletableFuture<Object> submit(MethodInvoker invoker, Object target, Object[] args) {
+    CompletableFuture<Object> promise = new CompletableFuture<>();
+    try {
+      executor().execute(() -> run(invoker, target, args, promise));
+    } catch (RejectedExecutionException e) {
+      promise.completeExceptionally(e);
+    }
+    return promise;
+  }
+
+  /**
+   * Runs a task on the executor, such as a background refresh started
+   * by an Interceptor.
+   *
+   * @param task the task
+   * @throws RejectedExecutionException if the container is closed
+   */
+  @Override
+  public void execute(Runnable task) {
+    executor().execute(task);
+  }
+
+  /**
+   * Shuts the executor down. Running methods complete, and methods
+   * submitted afterwards fail with a RejectedExecutionException.
+   */
+  void close() {
+    lock.lock();
+    try {
+      closed = true;
+      if (executor != null) {
+        executor.shutdown();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private ExecutorService executor() {
+    ExecutorService value = executor;
+    if (value == null) {
+      lock.lock();
+      try {
+        if (closed) {
+          throw new RejectedExecutionException("Container is closed");
+        }
+        value = executor;
+        if (value == null) {
+          value = factory.get();
+          executor = value;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return value;
+  }
+
+  private static void run(MethodInvoker invoker, Object target, Object[] args,
+      CompletableFuture<Object> promise) {
+    Object result;
+    try {
+      result = invoker.invoke(target, args);
+    } catch (Throwable t) {
+      promise.completeExceptionally(t);
+      return;
+    }
+    if (result instanceof CompletionStage) {
+      ((CompletionStage<?>) result).whenComplete((value, error) -> {
+        if (error == null) {
+          promise.complete(value);
+        } else {
+          promise.completeExceptionally(error instanceof CompletionException
+              && error.getCause() != null ? error.getCause() : error);
+        }
+      });
+    } else {
+      promise.complete(result);
+    }
+  }
+
+  /**
+   * Creates the default executor: a virtual thread per task when the
+   * runtime supports them, otherwise a bounded pool of
+   * {@link #DEFAULT_THREADS} daemon threads, so that a burst of calls
+   * cannot start a platform thread each.
+   *
+   * @return the executor
+   */
+  static ExecutorService createDefault() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return createBounded(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+  }
+
+  /**
+   * Creates a cached pool of daemon threads that starts a thread for
+   * every call that finds all threads busy.
+   *
+   * @return the executor
+   */
+  static ExecutorService createUnbounded() {
+    return Executors.newCachedThreadPool(AsyncExecutor::newThread);
+  }
+
+  /**
+   * Creates a bounded executor. When all threads are busy and the
+   * queue is full, the caller runs the method itself, which slows it
+   * down until the executor catches up.
+   *
+   * @param threads the maximum number of threads
+   * @param queueCapacity the number of calls that may wait for a thread
+   * @return the executor
+   */
+  static ExecutorService createBounded(int threads, int queueCapacity) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+        60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+        AsyncExecutor::newThread, (task, pool) -> {
+          if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Container is closed");
+          }
+          task.run();
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static Thread newThread(Runnable task) {
+    Thread thread = new Thread(task, "jbasis-async-" + THREADS.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
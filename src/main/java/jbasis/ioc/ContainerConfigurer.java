@@ -1,6 +1,10 @@
 package jbasis.ioc;
 
 import java.lang.reflect.Constructor;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
 import jbasis.util.JBasisException;
 
 /**
@@ -27,6 +31,98 @@ public interface ContainerConfigurer {
    */
   <R extends Registry> void apply(R registry);
 
+  /**
+   * Selects the engine used to wrap interface services in 
+   * intercepting proxies. Defaults to {@link ProxyEngine#JDK}.
+   * 
+   * @param engine the proxy engine
+   */
+  void useProxyEngine(ProxyEngine engine);
+
+  /**
+   * Selects how constructors and proxied service methods are 
+   * invoked. Defaults to {@link InvocationMode#getDefault()}.
+   * 
+   * @param mode the invocation mode
+   */
+  void useInvocationMode(InvocationMode mode);
+
+  /**
+   * Selects the executor on which methods annotated with
+   * {@link jbasis.interception.Async} run. The executor is created 
+   * by the container on the first such call and shut down when the 
+   * container is closed. Defaults to a virtual thread per task when 
+   * the runtime supports them, and otherwise to a bounded pool of 
+   * daemon threads, four per available processor and at least eight, 
+   * on which the caller runs the method itself once 1024 calls are 
+   * waiting.
+   * 
+   * @param factory creates the executor
+   */
+  void useAsyncExecutor(Supplier<ExecutorService> factory);
+
+  /**
+   * Runs methods annotated with {@link jbasis.interception.Async} on 
+   * a bounded pool of daemon threads. When all threads are busy and 
+   * the queue is full, the caller runs the method itself.
+   * 
+   * @param threads the maximum number of threads
+   * @param queueCapacity the number of calls that may wait for a thread
+   */
+  void useBoundedAsyncExecutor(int threads, int queueCapacity);
+
+  /**
+   * Runs methods annotated with {@link jbasis.interception.Async} on 
+   * a cached pool of daemon threads, which starts a new thread for 
+   * every call that finds all threads busy. The number of threads is 
+   * not limited, so this is only safe when the callers bound the 
+   * number of concurrent calls themselves.
+   */
+  void useUnboundedAsyncExecutor();
+
+  /**
+   * Creates all singletons before the container is returned instead 
+   * of on first use, with one thread per available processor. 
+   * Singletons that do not depend on each other are created in 
+   * parallel.
+   */
+  void useEagerSingletons();
+
+  /**
+   * Creates all singletons before the container is returned instead 
+   * of on first use. Singletons that do not depend on each other are 
+   * created in parallel.
+   * 
+   * @param parallelism the number of threads creating singletons
+   */
+  void useEagerSingletons(int parallelism);
+
+  /**
+   * Records which singletons are used, in which order and how long 
+   * each took to create, and writes them to a file when the container 
+   * is closed. If the file exists when the container is created, the 
+   * singletons it lists are created in parallel in the background, so 
+   * the singletons a run actually needs are ready early without 
+   * creating those it rarely uses.
+   * 
+   * @param profile the profile file
+   */
+  void useWarmUpProfile(Path profile);
+
+  /**
+   * Bounds how long closing the container may take. Singletons are 
+   * closed in parallel, each after the singletons that depend on it. 
+   * A singleton that does not close in time is interrupted and left 
+   * behind together with the singletons it depends on, and once the 
+   * total time is up the remaining singletons are not closed. The 
+   * total includes waiting for pre-warming to stop. Defaults to 10 
+   * seconds per singleton and 30 seconds in total.
+   * 
+   * @param serviceMilliseconds how long closing one singleton may take
+   * @param totalMilliseconds how long closing all singletons may take
+   */
+  void useCloseTimeouts(long serviceMilliseconds, long totalMilliseconds);
+
   /**
    * Gets the configured registry.
    * 
@@ -37,6 +133,7 @@ public interface ContainerConfigurer {
 
 class ContainerConfigurerImpl implements ContainerConfigurer {
   private Registry registry;
+  private final ContainerSettings settings = new ContainerSettings();
 
   @Override
   public <R extends Registry> void apply(Class<R> registryType) {
@@ -53,8 +150,70 @@ class ContainerConfigurerImpl implements ContainerConfigurer {
     this.registry = registry;
   }
 
+  @Override
+  public void useProxyEngine(ProxyEngine engine) {
+    this.settings.setProxyEngine(engine);
+  }
+
+  @Override
+  public void useInvocationMode(InvocationMode mode) {
+    this.settings.setInvocationMode(mode);
+  }
+
+  @Override
+  public void useAsyncExecutor(Supplier<ExecutorService> factory) {
+    this.settings.setAsyncExecutorFactory(factory);
+  }
+
+  @Override
+  public void useBoundedAsyncExecutor(int threads, int queueCapacity) {
+    if (threads < 1 || queueCapacity < 1) {
+      throw new JBasisException("Threads and queue capacity must be positive but were "
+          + threads + " and " + queueCapacity);
+    }
+    this.settings.setAsyncExecutorFactory(
+        () -> AsyncExecutor.createBounded(threads, queueCapacity));
+  }
+
+  @Override
+  public void useUnboundedAsyncExecutor() {
+    this.settings.setAsyncExecutorFactory(AsyncExecutor::createUnbounded);
+  }
+
+  @Override
+  public void useEagerSingletons() {
+    useEagerSingletons(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Override
+  public void useEagerSingletons(int parallelism) {
+    if (parallelism < 1) {
+      throw new JBasisException("Parallelism must be positive but was " + parallelism);
+    }
+    this.settings.setEagerParallelism(parallelism);
+  }
+
+  @Override
+  public void useWarmUpProfile(Path profile) {
+    this.settings.setWarmUpProfile(profile);
+  }
+
+  @Override
+  public void useCloseTimeouts(long serviceMilliseconds, long totalMilliseconds) {
+    if (serviceMilliseconds <= 0 || totalMilliseconds <= 0) {
+      throw new JBasisException("Close timeouts must be positive but were "
+          + serviceMilliseconds + " and " + totalMilliseconds + " ms");
+    }
+    this.settings.setServiceCloseTimeoutMilliseconds(serviceMilliseconds);
+    this.settings.setCloseTimeoutMilliseconds(totalMilliseconds);
+  }
+
   @Override
   public Registry getRegistry() {
     return this.registry;
   }
+
+  ContainerSettings getSettings() {
+    return this.settings;
+  }
 }
@@ -1,15 +1,28 @@
 package jbasis.ioc;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Proxy;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -19,153 +32,302 @@ import jbasis.util.JBasisException;
 
 /**
  * Default Container implementation
+ * <p>
+ * A scope shares the descriptor tables, settings and logger of the
+ * Root Scope container, so creating one does not depend on the number
+ * of registered services. The instances owned by a scope are kept in
+ * slots that are only allocated when a scoped service is resolved.
+ * The executor for {@link jbasis.interception.Async} methods is owned
+ * by the Root Scope and shut down when it is closed.
+ * <p>
+ * Singletons are created on first use unless eager singletons are
+ * configured, in which case they are created in parallel, layer by
+ * layer of their dependency graph, before the constructor returns.
+ * With a warm-up profile, the singletons used by the previous run are
+ * created in the background instead.
+ * <p>
+ * Closing the Root Scope closes its singletons in parallel, layer by
+ * layer in the reverse order of their dependencies, within the close
+ * timeouts of the settings.
  */
 public final class ContainerImpl implements Container, AutoCloseable {
  
-  private final Logger logger = LoggerFactory.get(getClass());
-  private Map<String, FactoryDescriptor> descriptors = new HashMap<>();
-  private boolean isScoped = false;
-
-  private ContainerImpl() {}
+  private static final FactoryDescriptor[] EMPTY = new FactoryDescriptor[0];
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<ContainerImpl, AtomicReferenceArray> SLOTS =
+      AtomicReferenceFieldUpdater.newUpdater(ContainerImpl.class, AtomicReferenceArray.class,
+          "scopedInstances");
+
+  private final Logger logger;
+  private FactoryDescriptor[] factories = EMPTY;
+  private int firstId;
+  private FactoryDescriptor[] registered = EMPTY;
+  private FactoryDescriptor[] scoped = EMPTY;
+  private ContainerSettings settings;
+  private final AsyncExecutor asyncExecutor;
+  private final WarmUpProfile profile;
+  private volatile ForkJoinPool prewarming;
+  private final AtomicLong creations = new AtomicLong();
+  private final ContainerImpl root;
+  private final boolean isScoped;
+  private volatile AtomicReferenceArray<LazyFactory<Object>> scopedInstances;
+
+  private ContainerImpl(ContainerImpl root) {
+    this.root = root;
+    this.isScoped = true;
+    this.logger = root.logger;
+    this.settings = root.settings;
+    this.asyncExecutor = root.asyncExecutor;
+    this.profile = root.profile;
+    this.factories = root.factories;
+    this.firstId = root.firstId;
+    this.scoped = root.scoped;
+  }
 
   /**
    * Container implementation.
    * @param configure a consumer that allows configuring the Container
    */
   public ContainerImpl(Consumer<ContainerConfigurer> configure) {
+    this.root = this;
+    this.isScoped = false;
+    this.logger = LoggerFactory.get(getClass());
 
     logger.info("Initializing Root Scope");
-    ContainerConfigurer configurer = new ContainerConfigurerImpl();
+    ContainerConfigurerImpl configurer = new ContainerConfigurerImpl();
     configure.accept(configurer);
+    settings = configurer.getSettings();
+    asyncExecutor = new AsyncExecutor(settings.getAsyncExecutorFactory());
+    profile = settings.getWarmUpProfile() == null
+        ? null : new WarmUpProfile(settings.getWarmUpProfile(), logger);
     try {
       Registry registry = configurer.getRegistry();
 
       ServiceCollectionImpl services = new ServiceCollectionImpl();
       registry.configure(services);
 
+      List<ResolutionPlan> plans = new ArrayList<>();
+      List<FactoryDescriptor> descriptors = new ArrayList<>();
       for (ServiceDescriptor descriptor : services) {
-        register(descriptor);
+        plans.add(register(descriptor, descriptors));
+      }
+
+      // the table spans the ids of this container's services only
+      int first = Integer.MAX_VALUE;
+      int last = -1;
+      for (FactoryDescriptor sf : descriptors) {
+        first = Math.min(first, sf.id);
+        last = Math.max(last, sf.id);
+      }
+      firstId = last < 0 ? 0 : first;
+      factories = new FactoryDescriptor[last + 1 - firstId];
+      for (FactoryDescriptor sf : descriptors) {
+        factories[sf.id - firstId] = sf;
+      }
+      registered = descriptors.toArray(EMPTY);
+
+      List<FactoryDescriptor> scopedDescriptors = new ArrayList<>();
+      for (FactoryDescriptor sf : registered) {
+        if (sf.lifetime == ServiceLifetime.SCOPED) {
+          sf.scopedIndex = scopedDescriptors.size();
+          scopedDescriptors.add(sf);
+        }
+      }
+      scoped = scopedDescriptors.toArray(EMPTY);
+
+      for (ResolutionPlan plan : plans) {
+        plan.bind(this::getFactory);
       }
 
     } catch (Exception t) {
       throw new JBasisException(t.getMessage(), t);
     }
+
+    if (profile != null) {
+      for (FactoryDescriptor sf : registered) {
+        sf.track = sf.lifetime == ServiceLifetime.SINGLETON;
+      }
+    }
+    if (settings.getEagerParallelism() > 0) {
+      warmUp(settings.getEagerParallelism());
+    } else if (profile != null) {
+      prewarm(profile.read());
+    }
   }
 
-  private void register(ServiceDescriptor descriptor) {
+  /**
+   * Starts creating the singletons listed in the warm-up profile in
+   * the background, in the order the previous run first used them.
+   * A singleton that fails is logged and left to fail again when it
+   * is resolved.
+   */
+  private void prewarm(List<String> names) {
+    Map<String, FactoryDescriptor> singletons = new HashMap<>();
+    for (FactoryDescriptor sf : registered) {
+      if (sf.lifetime == ServiceLifetime.SINGLETON) {
+        singletons.put(sf.serviceType.getName(), sf);
+      }
+    }
+    List<FactoryDescriptor> selected = new ArrayList<>();
+    for (String name : names) {
+      FactoryDescriptor sf = singletons.remove(name);
+      if (sf != null) {
+        selected.add(sf);
+      }
+    }
+    if (selected.isEmpty()) {
+      return;
+    }
+
+    logger.info("Pre-warming {} singletons from {}", selected.size(), profile.getFile());
+    ForkJoinPool pool = WarmUpProfile.newWarmUpPool(
+        Math.min(Runtime.getRuntime().availableProcessors(), selected.size()));
+    for (FactoryDescriptor sf : selected) {
+      pool.execute(() -> {
+        try {
+          sf.factory.apply(this);
+        } catch (RuntimeException e) {
+          logger.warn("Failed to pre-warm {}. {}", sf.serviceType.getName(), e.getMessage(), e);
+        }
+      });
+    }
+    pool.shutdown();
+    prewarming = pool;
+  }
+
+  /**
+   * Creates all singletons. The singletons of a layer of the
+   * dependency graph are created in parallel, and a layer starts once
+   * the layer before it has been created. If a singleton cannot be
+   * created, the ones that have been are closed, since the caller
+   * gets no container to close.
+   */
+  private void warmUp(int parallelism) {
+    FactoryDescriptor[][] layers = SingletonGraph.layers(registered);
+    logger.debug("Warming up singletons in {} layers", layers.length);
+    long start = System.nanoTime();
+    int count = 0;
+    ForkJoinPool pool = WarmUpProfile.newWarmUpPool(parallelism);
+    try {
+      for (FactoryDescriptor[] layer : layers) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(layer.length);
+        for (FactoryDescriptor sf : layer) {
+          tasks.add(pool.submit(() -> sf.factory.apply(this)));
+        }
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+          try {
+            task.join();
+          } catch (RuntimeException e) {
+            if (failure == null) {
+              failure = e;
+            } else {
+              failure.addSuppressed(e);
+            }
+          }
+        }
+        if (failure != null) {
+          closeSingletons(closeDeadline());
+          asyncExecutor.close();
+          throw new JBasisException("Failed to create singletons eagerly. "
+              + failure.getMessage(), failure);
+        }
+        count += layer.length;
+      }
+    } finally {
+      pool.shutdown();
+    }
+    logger.info("Warmed up {} singletons in {} ms", count,
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  private ResolutionPlan register(ServiceDescriptor descriptor,
+      List<FactoryDescriptor> descriptors) {
     String name = descriptor.getServiceType().getTypeName();
+    ResolutionPlan plan = ResolutionPlan.compile(descriptor, settings.getInvocationMode());
 
     FactoryDescriptor sf = new FactoryDescriptor();
+    sf.id = ServiceIds.assign(descriptor.getServiceType());
     sf.lifetime = descriptor.getServiceLifetime();
     sf.serviceType = descriptor.getServiceType();
+    sf.plan = plan;
 
     final String initializingFormat = "Initializing {} Service {}";
     final String initializedFormat = "Initialized {} Service {} for {}";
 
     if (descriptor.getServiceLifetime() == ServiceLifetime.SINGLETON) {
       sf.factory = new LazyFactory<>(ctx -> {
-        debug(initializingFormat, ServiceLifetime.SINGLETON, name);
-        Object service = createProxy(ctx, descriptor);
+        logger.debug(initializingFormat, ServiceLifetime.SINGLETON, name);
+        long start = System.nanoTime();
+        Object service = createProxy(ctx, plan);
+        sf.creationNanos = System.nanoTime() - start;
+        sf.creationOrder = creations.incrementAndGet();
         logger.info(initializedFormat, ServiceLifetime.SINGLETON, service, name);
         return service;
       });
     } else if (descriptor.getServiceLifetime() == ServiceLifetime.SCOPED) {
       sf.factory = ctx -> {
-        debug(initializingFormat, ServiceLifetime.SCOPED, name);
-        Object service = createProxy(ctx, descriptor);
+        logger.debug(initializingFormat, ServiceLifetime.SCOPED, name);
+        Object service = createProxy(ctx, plan);
         logger.info(initializedFormat, ServiceLifetime.SCOPED, service, name);
         return service;
       };
     } else {
       sf.factory = ctx -> {
-        debug(initializingFormat, ServiceLifetime.TRANSIENT, name);
-        Object service = createProxy(ctx, descriptor);
+        logger.debug(initializingFormat, ServiceLifetime.TRANSIENT, name);
+        Object service = createProxy(ctx, plan);
         logger.info(initializedFormat, ServiceLifetime.TRANSIENT, service, name);
         return service;
       };
     }
 
-    descriptors.put(name, sf);
+    descriptors.add(sf);
+    return plan;
   }
 
-  private Object createProxy(ServiceFactory context, ServiceDescriptor descriptor) {
-    Function<ServiceFactory, Object> factory = descriptor.getFactory();
-    Object service = null;
-
-    if (factory != null) {
-      service = factory.apply(context);
-    } else {
-      service = constructService(descriptor);
+  private Object createProxy(ServiceFactory context, ResolutionPlan plan) {
+    ContainerImpl dependencyContext = this;
+    if (plan.getLifetime() != ServiceLifetime.SINGLETON
+        && context instanceof ContainerImpl) {
+      dependencyContext = (ContainerImpl) context;
     }
+    Object service = plan.create(context, dependencyContext, logger);
 
-    if (descriptor.getServiceType().isInterface()) {
-      service = Proxy.newProxyInstance(ContainerImpl.class.getClassLoader(),
-          new Class[] {descriptor.getServiceType()}, new InterceptionInvocationHandler(context, service));
+    if (plan.isProxied() && service != null
+        && InterceptedMethod.isIntercepted(service.getClass(), plan.getServiceType())) {
+      service = settings.getProxyEngine().createProxy(plan.getServiceType(), service,
+          new InterceptionInvocationHandler(context, service, settings.getInvocationMode(),
+              asyncExecutor));
     }
     return service;
   }
 
-  private Object constructService(ServiceDescriptor descriptor) {
-    Constructor<?>[] constructors = descriptor.getImplementationType().getDeclaredConstructors();
-
-    Optional<Constructor<?>> optionalConstructor = Arrays.stream(constructors)
-      .sorted((x,y) -> Long.compare(y.getParameterTypes().length, x.getParameterTypes().length))
-      .findFirst();
-    
-    if (!optionalConstructor.isPresent()) {
-      throw new JBasisException("No constructors found for " + descriptor.getImplementationType().getTypeName());
-    }
-
-    Constructor<?> constructor = optionalConstructor.get();
-
-    List<Object> dependencies = resolveServiceDependencies(constructor, descriptor.getImplementationType().getName());
-
-    try {
-      return constructor.newInstance(dependencies.toArray());
-    } catch (InvocationTargetException e) {
-      throw new JBasisException(e.getCause().getMessage(), e.getCause());
-    } catch (InstantiationException | IllegalAccessException | IllegalArgumentException e) {
-      throw new JBasisException(e.getMessage(), e);
-    }
-  }
-
-  private List<Object> resolveServiceDependencies(Constructor<?> constructor, String implementationTypeName) {
-    Class<?>[] dependencyTypes = constructor.getParameterTypes();
-    
-    List<Object> dependencies = new ArrayList<>();
-    for(Class<?> dependencyType : dependencyTypes) {
-      String typeName = dependencyType.getTypeName();
-      if (!descriptors.containsKey(typeName)){
-        dependencies.add(null);
-      } else {
-        logger.debug("AUTORESOLVE - {} for {}", typeName, implementationTypeName);
-        FactoryDescriptor dependencyFactory = descriptors.get(typeName);
-        Object dependency = dependencyFactory.factory.apply(this);
-        dependencies.add(dependency);
-        logger.info("Resolved {} dependency for {}", typeName, implementationTypeName);
-      }
-    }
-    return dependencies;
-  }
-
-  private class FactoryDescriptor {
+  static final class FactoryDescriptor {
+    int id;
     ServiceLifetime lifetime;
     Function<ServiceFactory, ?> factory;
     Class<?> serviceType;
+    ResolutionPlan plan;
+    int scopedIndex = -1;
+    // set while a profiled singleton has not been resolved yet
+    boolean track;
+    long creationNanos;
+    // the order in which the creation of singletons completed
+    long creationOrder;
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public <T> T resolve(Class<T> cls) {
-    debug("Resolving Service " + cls.getName());
-    String key = getKey(cls);
-    if (descriptors.containsKey(key)) {
-      FactoryDescriptor sf = descriptors.get(key);
+    logger.debug("Resolving Service {}", cls.getName());
+    FactoryDescriptor sf = getFactory(cls);
+    if (sf != null) {
       if (sf.lifetime == ServiceLifetime.SCOPED 
           && !isScoped) {
         throw new JBasisException("Cannot resolve scoped services in root scope");
       }
-      Object service = sf.factory.apply(this);
+      Object service = resolveDependency(sf);
       logger.info("Resolved {} Service {} for {}", sf.lifetime, cls.getName(), service);
       return (T) service;
     }
@@ -177,16 +339,15 @@ public final class ContainerImpl implements Container, AutoCloseable {
   @SuppressWarnings("unchecked")
   public <T> Optional<T> tryResolve(Class<T> cls) {
     final String warning = "Warning - unable to resolve Service {}";
-    debug("Resolving Service {}", cls.getName());
+    logger.debug("Resolving Service {}", cls.getName());
     try {
-      String key = getKey(cls);
-      if (descriptors.containsKey(key)) {
-        FactoryDescriptor sf = descriptors.get(key);
+      FactoryDescriptor sf = getFactory(cls);
+      if (sf != null) {
         if (sf.lifetime == ServiceLifetime.SCOPED 
             && !isScoped) {
           throw new JBasisException("Cannot resolve scoped services in root scope");
         }
-        Object service = sf.factory.apply(this);
+        Object service = resolveDependency(sf);
         logger.info("Resolved {} Service {} for {}", sf.lifetime,  cls.getName(), service);
         return Optional.of((T) service);
       }
@@ -198,97 +359,258 @@ public final class ContainerImpl implements Container, AutoCloseable {
     return Optional.empty();
   }
 
-  private String getKey(Class<?> cls) {
-    return cls.getTypeName();
+  /**
+   * Gets an instance of a registered service in this container.
+   * Scoped services resolved in a scope are memoized in the slot of
+   * the scope, otherwise the registered factory is applied.
+   */
+  Object resolveDependency(FactoryDescriptor sf) {
+    if (sf.track) {
+      profile.used(sf);
+    }
+    if (sf.lifetime == ServiceLifetime.SCOPED && isScoped) {
+      return scopedInstance(sf).apply(this);
+    }
+    return sf.factory.apply(this);
+  }
+
+  private LazyFactory<Object> scopedInstance(FactoryDescriptor sf) {
+    AtomicReferenceArray<LazyFactory<Object>> slots = scopedInstances;
+    if (slots == null) {
+      SLOTS.compareAndSet(this, null, new AtomicReferenceArray<>(scoped.length));
+      slots = scopedInstances;
+    }
+    LazyFactory<Object> lazy = slots.get(sf.scopedIndex);
+    if (lazy == null) {
+      @SuppressWarnings("unchecked")
+      Function<ServiceFactory, Object> factory = (Function<ServiceFactory, Object>) sf.factory;
+      lazy = new LazyFactory<>(factory);
+      if (!slots.compareAndSet(sf.scopedIndex, null, lazy)) {
+        lazy = slots.get(sf.scopedIndex);
+      }
+    }
+    return lazy;
+  }
+
+  private FactoryDescriptor getFactory(Class<?> cls) {
+    int id = ServiceIds.find(cls);
+    FactoryDescriptor[] table = factories;
+    int index = id - firstId;
+    return index >= 0 && index < table.length ? table[index] : null;
   }
 
   @Override
   public void close() {
     String type = isScoped ? "Scope" : "Root Scope";
-    debug("Closing " + type);
-    for (Entry<String, FactoryDescriptor> entry : descriptors.entrySet()) {
-      FactoryDescriptor sf = entry.getValue();
-      if (!isPotentiallyCloseable(sf)) {
-        continue;
+    logger.debug("Closing {}", type);
+    if (isScoped) {
+      AtomicReferenceArray<LazyFactory<Object>> slots = scopedInstances;
+      if (slots != null) {
+        for (int i = 0; i < slots.length(); i++) {
+          LazyFactory<Object> lazy = slots.get(i);
+          if (lazy != null && lazy.isPresent()) {
+            closeService(lazy.apply(this), scoped[i].serviceType);
+          }
+        }
       }
-      Object service = sf.factory.apply(this);
-      Class<?> serviceType = sf.serviceType;
-      try {
-        if (AutoCloseable.class.isInstance(service)) {
-          AutoCloseable c = (AutoCloseable) service;
-          c.close();
-          debug("Closed service {}", serviceType.getName());
-        } else {
-          debug("Service {} not closeable. Skipping...", serviceType.getName());
+      scopedInstances = null;
+    } else {
+      long deadline = closeDeadline();
+      stopPrewarming(deadline);
+      closeSingletons(deadline);
+      if (profile != null) {
+        profile.write();
+      }
+      asyncExecutor.close();
+    }
+    factories = EMPTY;
+    registered = EMPTY;
+    scoped = EMPTY;
+    logger.info("Closed {}", type);
+  }
+
+  /**
+   * @return the time by which closing the container must be done
+   */
+  private long closeDeadline() {
+    return System.nanoTime()
+        + TimeUnit.MILLISECONDS.toNanos(settings.getCloseTimeoutMilliseconds());
+  }
+
+  /**
+   * Stops pre-warming so no singleton is created after the container
+   * has closed the ones that exist. The wait counts towards the close
+   * timeout.
+   */
+  private void stopPrewarming(long deadline) {
+    ForkJoinPool pool = prewarming;
+    if (pool == null) {
+      return;
+    }
+    pool.shutdownNow();
+    try {
+      long wait = Math.max(deadline - System.nanoTime(), 0);
+      if (!pool.awaitTermination(wait, TimeUnit.NANOSECONDS)) {
+        logger.warn("Pre-warming did not stop within the close timeout");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Closes the created singletons, layer by layer, so that none is
+   * closed before the singletons that depend on it. The singletons of
+   * a layer are closed in parallel. A singleton that does not close
+   * within the service timeout is interrupted and left behind, along
+   * with the singletons it depends on, since it may still be using
+   * them. Once the deadline has passed the remaining layers are not
+   * closed.
+   *
+   * @param deadline the time by which closing must be done
+   */
+  private void closeSingletons(long deadline) {
+    List<FactoryDescriptor> created = new ArrayList<>();
+    for (FactoryDescriptor sf : registered) {
+      if (isPotentiallyCloseable(sf)) {
+        created.add(sf);
+      }
+    }
+    if (created.isEmpty()) {
+      return;
+    }
+    created.sort(Comparator.comparingLong(sf -> sf.creationOrder));
+    FactoryDescriptor[][] layers = SingletonGraph.closeLayers(created);
+
+    long serviceTimeout = settings.getServiceCloseTimeoutMilliseconds();
+    long start = System.nanoTime();
+    AtomicInteger threads = new AtomicInteger();
+    ExecutorService pool = Executors.newCachedThreadPool(task -> {
+      Thread thread = new Thread(task, "jbasis-close-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    Map<String, Long> closeNanos = new LinkedHashMap<>();
+    Set<FactoryDescriptor> abandoned = Collections.newSetFromMap(new IdentityHashMap<>());
+    StringJoiner leftOpen = new StringJoiner(", ");
+    boolean interrupted = false;
+    int layer = 0;
+    try {
+      for (; layer < layers.length && !interrupted && deadline - System.nanoTime() > 0; layer++) {
+        List<FactoryDescriptor> closing = new ArrayList<>(layers[layer].length);
+        List<Future<Long>> tasks = new ArrayList<>(layers[layer].length);
+        for (FactoryDescriptor sf : layers[layer]) {
+          if (abandoned.contains(sf)) {
+            leftOpen.add(sf.serviceType.getName());
+            continue;
+          }
+          Object service = sf.factory.apply(this);
+          if (!(service instanceof AutoCloseable)) {
+            logger.debug("Service {} not closeable. Skipping...", sf.serviceType.getName());
+            continue;
+          }
+          closing.add(sf);
+          tasks.add(pool.submit(() -> {
+            long begin = System.nanoTime();
+            closeService(service, sf.serviceType);
+            return System.nanoTime() - begin;
+          }));
+        }
+
+        long layerStart = System.nanoTime();
+        long layerDeadline = layerStart + TimeUnit.MILLISECONDS.toNanos(serviceTimeout);
+        if (layerDeadline - deadline > 0) {
+          layerDeadline = deadline;
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+          String name = closing.get(i).serviceType.getName();
+          Future<Long> task = tasks.get(i);
+          try {
+            long wait = interrupted ? 0 : Math.max(layerDeadline - System.nanoTime(), 0);
+            closeNanos.put(name, task.get(wait, TimeUnit.NANOSECONDS));
+          } catch (TimeoutException e) {
+            task.cancel(true);
+            abandoned.addAll(SingletonGraph.dependencies(closing.get(i), created));
+            logger.warn("Service {} did not close within {} ms", name,
+                (System.nanoTime() - layerStart) / 1_000_000);
+          } catch (InterruptedException e) {
+            interrupted = true;
+            i--;
+          } catch (ExecutionException e) {
+            logger.error("Error closing Container: {}", e.getCause().getMessage(), e.getCause());
+          }
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    if (layer < layers.length) {
+      StringJoiner skipped = new StringJoiner(", ");
+      for (; layer < layers.length; layer++) {
+        for (FactoryDescriptor sf : layers[layer]) {
+          skipped.add(sf.serviceType.getName());
         }
-      } catch (Exception e) {
-        logger.error("Error closing Container: " + e.getMessage(), e);
       }
+      logger.warn("Stopped closing singletons after {} ms. Not closed: {}",
+          (System.nanoTime() - start) / 1_000_000, skipped);
+    }
+    if (leftOpen.length() > 0) {
+      logger.warn("Did not close {}, which services that did not close depend on", leftOpen);
+    }
+    StringJoiner slowest = new StringJoiner(", ");
+    closeNanos.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+        .limit(3)
+        .forEach(e -> slowest.add(e.getKey() + " " + e.getValue() / 1_000_000 + " ms"));
+    logger.info("Closed {} singletons in {} layers in {} ms. Slowest: {}", closeNanos.size(),
+        layers.length, (System.nanoTime() - start) / 1_000_000, slowest);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
-    descriptors.clear();
-    logger.info("Closed " + type);
   }
 
-  @Override
-  public Container createScope() {
-    ContainerImpl scope = new ContainerImpl();
-    scope.isScoped = true;
-    for(Entry<String, FactoryDescriptor> entry : descriptors.entrySet()) {
-      FactoryDescriptor sf = entry.getValue();
-      if (sf.lifetime == ServiceLifetime.TRANSIENT 
-          || sf.lifetime == ServiceLifetime.SINGLETON) {
-        scope.descriptors.put(entry.getKey(), sf);
+  private void closeService(Object service, Class<?> serviceType) {
+    try {
+      if (AutoCloseable.class.isInstance(service)) {
+        AutoCloseable c = (AutoCloseable) service;
+        c.close();
+        logger.debug("Closed service {}", serviceType.getName());
       } else {
-        FactoryDescriptor scopedFactory = new FactoryDescriptor();
-        scopedFactory.serviceType = sf.serviceType;
-        scopedFactory.lifetime = sf.lifetime;
-        scopedFactory.factory = new LazyFactory<>(sf.factory);
-        scope.descriptors.put(entry.getKey(), scopedFactory);
+        logger.debug("Service {} not closeable. Skipping...", serviceType.getName());
       }
+    } catch (Exception e) {
+      logger.error("Error closing Container: {}", e.getMessage(), e);
     }
+  }
+
+  @Override
+  public Container createScope() {
+    ContainerImpl scope = new ContainerImpl(root);
     logger.info("New scope created");
     return scope;
   }
 
   /** 
-   * Determines if the service is potentially closeable.
+   * Determines if a service of the Root Scope is potentially closeable.
    * 
    * If TRANSIENT - not closeable. It is up to the caller to clean up
    * their own services if they are TRANSIENT.
    * 
+   * If SCOPED - not closeable. Scoped instances are owned and closed
+   * by the scope that created them.
+   * 
    * If SINGLETON and service has not been instantiated, then it is 
    * not considered closeable. This is to avoid creating an instance 
    * of the service for the sole purpose of then closing it after the 
    * fact.
    */
-  private boolean isPotentiallyCloseable(FactoryDescriptor sf) {
-    boolean potentiallyCloseable = true;
-    if (sf.lifetime == ServiceLifetime.TRANSIENT) {
-      potentiallyCloseable = false;
-    } else if (sf.lifetime == ServiceLifetime.SCOPED) {
-      if (isScoped) {
-        LazyFactory<?> lazy = (LazyFactory<?>)sf.factory;
-        if (!lazy.isPresent()) {
-          potentiallyCloseable = false;
-        }
-      } else {
-      potentiallyCloseable = false;
-      }      
-    } else {
-      LazyFactory<?> lazy = (LazyFactory<?>)sf.factory;
-      if (!lazy.isPresent()) {
-        potentiallyCloseable = false;
-      } else {
-        potentiallyCloseable = !isScoped;
-      }
-    }
-    return potentiallyCloseable;
-  }
-
-  private void debug(String format, Object... params) {
-    if (logger.isDebugEnabled()) {
-      logger.debug(format, params);
+  private static boolean isPotentiallyCloseable(FactoryDescriptor sf) {
+    if (sf.lifetime != ServiceLifetime.SINGLETON) {
+      return false;
     }
+    LazyFactory<?> lazy = (LazyFactory<?>)sf.factory;
+    return lazy.isPresent();
   }
 }
 
@@ -0,0 +1,91 @@
+package jbasis.ioc;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Options applied to a Container through the ContainerConfigurer.
+ * Settings are shared by a Root Scope container and its scopes.
+ */
+final class ContainerSettings {
+  private ProxyEngine proxyEngine = ProxyEngine.JDK;
+  private InvocationMode invocationMode = InvocationMode.getDefault();
+  private Supplier<ExecutorService> asyncExecutorFactory = AsyncExecutor::createDefault;
+  private int eagerParallelism;
+  private Path warmUpProfile;
+  private long serviceCloseTimeoutMilliseconds = 10_000;
+  private long closeTimeoutMilliseconds = 30_000;
+
+  ProxyEngine getProxyEngine() {
+    return proxyEngine;
+  }
+
+  void setProxyEngine(ProxyEngine proxyEngine) {
+    this.proxyEngine = proxyEngine;
+  }
+
+  InvocationMode getInvocationMode() {
+    return invocationMode;
+  }
+
+  void setInvocationMode(InvocationMode invocationMode) {
+    this.invocationMode = invocationMode;
+  }
+
+  Supplier<ExecutorService> getAsyncExecutorFactory() {
+    return asyncExecutorFactory;
+  }
+
+  void setAsyncExecutorFactory(Supplier<ExecutorService> asyncExecutorFactory) {
+    this.asyncExecutorFactory = asyncExecutorFactory;
+  }
+
+  /**
+   * @return the number of threads creating singletons when the
+   *     container is created, or 0 if singletons are created lazily
+   */
+  int getEagerParallelism() {
+    return eagerParallelism;
+  }
+
+  void setEagerParallelism(int eagerParallelism) {
+    this.eagerParallelism = eagerParallelism;
+  }
+
+  /**
+   * @return the file recording the singletons used by a run, or null
+   *     if singletons are not profiled
+   */
+  Path getWarmUpProfile() {
+    return warmUpProfile;
+  }
+
+  void setWarmUpProfile(Path warmUpProfile) {
+    this.warmUpProfile = warmUpProfile;
+  }
+
+  /**
+   * @return how long closing one singleton may take before the
+   *     container stops waiting for it
+   */
+  long getServiceCloseTimeoutMilliseconds() {
+    return serviceCloseTimeoutMilliseconds;
+  }
+
+  void setServiceCloseTimeoutMilliseconds(long serviceCloseTimeoutMilliseconds) {
+    this.serviceCloseTimeoutMilliseconds = serviceCloseTimeoutMilliseconds;
+  }
+
+  /**
+   * @return how long closing all singletons may take before the
+   *     container stops closing them
+   */
+  long getCloseTimeoutMilliseconds() {
+    return closeTimeoutMilliseconds;
+  }
+
+  void setCloseTimeoutMilliseconds(long closeTimeoutMilliseconds) {
+    this.closeTimeoutMilliseconds = closeTimeoutMilliseconds;
+  }
+}
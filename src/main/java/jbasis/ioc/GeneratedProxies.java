@@ -0,0 +1,512 @@
+package jbasis.ioc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jbasis.util.JBasisException;
+
+/**
+ * Generates proxy classes for the {@link ProxyEngine#GENERATED} engine.
+ * <p>
+ * One class is generated per (implementation class, service interface)
+ * and defined in this package. Each generated method either calls the
+ * target through the service interface, or, if the implementation
+ * method carries annotations, boxes its arguments and dispatches
+ * through the {@link InterceptionInvocationHandler}. The generated
+ * code has no branches, so no stack map frames are required.
+ */
+final class GeneratedProxies {
+
+  private static final String PACKAGE = GeneratedProxies.class.getPackageName();
+  private static final ClassLoader LOADER = GeneratedProxies.class.getClassLoader();
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class,
+      Object.class, InterceptionInvocationHandler.class);
+  private static final AtomicInteger COUNTER = new AtomicInteger();
+
+  private static final String OBJECT = "java/lang/Object";
+  private static final String HANDLER = internalName(InterceptionInvocationHandler.class);
+  private static final String METHOD_ARRAY = "[Ljava/lang/reflect/Method;";
+  private static final String INVOKE_DESCRIPTOR =
+      "(Ljava/lang/Object;Ljava/lang/reflect/Method;[Ljava/lang/Object;)Ljava/lang/Object;";
+
+  /** Marks an interface that cannot be linked from the generated class. */
+  private static final MethodHandle UNSUPPORTED = MethodHandles.constant(Object.class, null);
+
+  private static final ClassValue<ConcurrentMap<Class<?>, MethodHandle>> FACTORIES =
+      new ClassValue<ConcurrentMap<Class<?>, MethodHandle>>() {
+        @Override
+        protected ConcurrentMap<Class<?>, MethodHandle> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  private GeneratedProxies() {}
+
+  /**
+   * Creates a generated proxy for the target.
+   *
+   * @param serviceType the service interface
+   * @param target the object to wrap
+   * @param handler the handler for intercepted methods
+   * @return the proxy, or null if the service interface is not
+   *     accessible to generated classes
+   */
+  static Object create(Class<?> serviceType, Object target,
+      InterceptionInvocationHandler handler) {
+    ConcurrentMap<Class<?>, MethodHandle> factories = FACTORIES.get(target.getClass());
+    MethodHandle factory = factories.get(serviceType);
+    if (factory == null) {
+      factory = factories.computeIfAbsent(serviceType,
+          type -> define(type, target.getClass()));
+    }
+    if (factory == UNSUPPORTED) {
+      return null;
+    }
+    try {
+      return (Object) factory.invokeExact(target, handler);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new JBasisException(t.getMessage(), t);
+    }
+  }
+
+  private static MethodHandle define(Class<?> serviceType, Class<?> implementationType) {
+    Method[] methods = proxiedMethods(serviceType);
+    if (!isLinkable(serviceType, methods)) {
+      return UNSUPPORTED;
+    }
+
+    boolean[] intercepted = new boolean[methods.length];
+    for (int i = 0; i < methods.length; i++) {
+      intercepted[i] = InterceptedMethod.isIntercepted(implementationType, methods[i]);
+    }
+
+    String className = PACKAGE + ".GeneratedProxy$" + COUNTER.incrementAndGet();
+    try {
+      byte[] bytes = generate(internalName(className), serviceType, methods, intercepted);
+      Class<?> proxyClass = LOOKUP.defineClass(bytes);
+      proxyClass.getDeclaredField("methods").set(null, methods);
+      return LOOKUP.findConstructor(proxyClass,
+          MethodType.methodType(void.class, serviceType, InterceptionInvocationHandler.class))
+          .asType(FACTORY_TYPE);
+    } catch (IOException | ReflectiveOperationException e) {
+      throw new JBasisException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Gets the instance methods of the interface, excluding those
+   * already implemented by java.lang.Object.
+   */
+  private static Method[] proxiedMethods(Class<?> serviceType) {
+    Map<String, Method> methods = new LinkedHashMap<>();
+    for (Method method : serviceType.getMethods()) {
+      if (Modifier.isStatic(method.getModifiers()) || isObjectMethod(method)) {
+        continue;
+      }
+      methods.putIfAbsent(method.getName() + methodDescriptor(method), method);
+    }
+    return methods.values().toArray(new Method[0]);
+  }
+
+  private static boolean isObjectMethod(Method method) {
+    try {
+      Object.class.getMethod(method.getName(), method.getParameterTypes());
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static boolean isLinkable(Class<?> serviceType, Method[] methods) {
+    if (!isAccessible(serviceType)) {
+      return false;
+    }
+    for (Method method : methods) {
+      if (!isAccessible(method.getReturnType())) {
+        return false;
+      }
+      for (Class<?> parameterType : method.getParameterTypes()) {
+        if (!isAccessible(parameterType)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAccessible(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    try {
+      if (Class.forName(type.getName(), false, LOADER) != type) {
+        return false;
+      }
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+    return Modifier.isPublic(type.getModifiers())
+        || (type.getClassLoader() == LOADER && PACKAGE.equals(type.getPackageName()));
+  }
+
+  private static byte[] generate(String className, Class<?> serviceType, Method[] methods,
+      boolean[] intercepted) throws IOException {
+    ConstantPool cp = new ConstantPool();
+    String service = internalName(serviceType);
+    String serviceDescriptor = "L" + service + ";";
+    String handlerDescriptor = "L" + HANDLER + ";";
+
+    int thisClass = cp.classRef(className);
+    int superClass = cp.classRef(OBJECT);
+    int serviceClass = cp.classRef(service);
+    int targetField = cp.fieldRef(className, "target", serviceDescriptor);
+    int handlerField = cp.fieldRef(className, "handler", handlerDescriptor);
+    int methodsField = cp.fieldRef(className, "methods", METHOD_ARRAY);
+
+    List<byte[]> methodInfos = new ArrayList<>();
+
+    // constructor
+    Code init = new Code();
+    init.op(0x2a).op(0xb7).u2(cp.methodRef(OBJECT, "<init>", "()V"));
+    init.op(0x2a).op(0x2b).op(0xb5).u2(targetField);
+    init.op(0x2a).op(0x2c).op(0xb5).u2(handlerField);
+    init.op(0xb1);
+    methodInfos.add(method(cp, 0x0001, "<init>",
+        "(" + serviceDescriptor + handlerDescriptor + ")V", init, 2, 3));
+
+    // toString is delegated to the target, equals and hashCode
+    // keep the identity semantics of java.lang.Object
+    Code toString = new Code();
+    toString.op(0x2a).op(0xb4).u2(targetField);
+    toString.op(0xb6).u2(cp.methodRef(OBJECT, "toString", "()Ljava/lang/String;"));
+    toString.op(0xb0);
+    methodInfos.add(method(cp, 0x0011, "toString", "()Ljava/lang/String;", toString, 1, 1));
+
+    for (int i = 0; i < methods.length; i++) {
+      Method m = methods[i];
+      String descriptor = methodDescriptor(m);
+      Class<?>[] parameterTypes = m.getParameterTypes();
+      int slots = 1;
+      for (Class<?> parameterType : parameterTypes) {
+        slots += slotSize(parameterType);
+      }
+
+      Code code = new Code();
+      int maxStack;
+      if (!intercepted[i]) {
+        code.op(0x2a).op(0xb4).u2(targetField);
+        int slot = 1;
+        for (Class<?> parameterType : parameterTypes) {
+          code.op(loadOpcode(parameterType)).op(slot);
+          slot += slotSize(parameterType);
+        }
+        code.op(0xb9).u2(cp.interfaceMethodRef(service, m.getName(), descriptor))
+            .op(slots).op(0);
+        code.op(returnOpcode(m.getReturnType()));
+        maxStack = Math.max(slots, 2);
+      } else {
+        code.op(0x2a).op(0xb4).u2(handlerField);
+        code.op(0x2a);
+        code.op(0xb2).u2(methodsField);
+        pushInt(code, cp, i);
+        code.op(0x32);
+        if (parameterTypes.length == 0) {
+          code.op(0x01);
+        } else {
+          pushInt(code, cp, parameterTypes.length);
+          code.op(0xbd).u2(cp.classRef(OBJECT));
+          int slot = 1;
+          for (int p = 0; p < parameterTypes.length; p++) {
+            code.op(0x59);
+            pushInt(code, cp, p);
+            code.op(loadOpcode(parameterTypes[p])).op(slot);
+            box(code, cp, parameterTypes[p]);
+            code.op(0x53);
+            slot += slotSize(parameterTypes[p]);
+          }
+        }
+        code.op(0xb6).u2(cp.methodRef(HANDLER, "invoke", INVOKE_DESCRIPTOR));
+        unboxAndReturn(code, cp, m.getReturnType());
+        maxStack = 8;
+      }
+      methodInfos.add(method(cp, 0x0011, m.getName(), descriptor, code, maxStack, slots));
+    }
+
+    int targetName = cp.utf8("target");
+    int targetType = cp.utf8(serviceDescriptor);
+    int handlerName = cp.utf8("handler");
+    int handlerType = cp.utf8(handlerDescriptor);
+    int methodsName = cp.utf8("methods");
+    int methodsType = cp.utf8(METHOD_ARRAY);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0);
+    out.writeShort(55);
+    cp.writeTo(out);
+    out.writeShort(0x0031);
+    out.writeShort(thisClass);
+    out.writeShort(superClass);
+    out.writeShort(1);
+    out.writeShort(serviceClass);
+
+    out.writeShort(3);
+    writeField(out, 0x0012, targetName, targetType);
+    writeField(out, 0x0012, handlerName, handlerType);
+    writeField(out, 0x0008, methodsName, methodsType);
+
+    out.writeShort(methodInfos.size());
+    for (byte[] info : methodInfos) {
+      out.write(info);
+    }
+    out.writeShort(0);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] method(ConstantPool cp, int access, String name, String descriptor,
+      Code code, int maxStack, int maxLocals) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    byte[] instructions = code.toByteArray();
+    out.writeShort(access);
+    out.writeShort(cp.utf8(name));
+    out.writeShort(cp.utf8(descriptor));
+    out.writeShort(1);
+    out.writeShort(cp.utf8("Code"));
+    out.writeInt(12 + instructions.length);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(instructions.length);
+    out.write(instructions);
+    out.writeShort(0);
+    out.writeShort(0);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void writeField(DataOutputStream out, int access, int name, int descriptor)
+      throws IOException {
+    out.writeShort(access);
+    out.writeShort(name);
+    out.writeShort(descriptor);
+    out.writeShort(0);
+  }
+
+  private static void pushInt(Code code, ConstantPool cp, int value) {
+    if (value <= 5) {
+      code.op(0x03 + value);
+    } else if (value <= Byte.MAX_VALUE) {
+      code.op(0x10).op(value);
+    } else if (value <= Short.MAX_VALUE) {
+      code.op(0x11).u2(value);
+    } else {
+      code.op(0x13).u2(cp.integer(value));
+    }
+  }
+
+  private static void box(Code code, ConstantPool cp, Class<?> type) {
+    if (!type.isPrimitive()) {
+      return;
+    }
+    String wrapper = internalName(wrapperType(type));
+    code.op(0xb8).u2(cp.methodRef(wrapper, "valueOf",
+        "(" + descriptor(type) + ")L" + wrapper + ";"));
+  }
+
+  private static void unboxAndReturn(Code code, ConstantPool cp, Class<?> type) {
+    if (type == void.class) {
+      code.op(0x57).op(0xb1);
+    } else if (type.isPrimitive()) {
+      String wrapper = internalName(wrapperType(type));
+      code.op(0xc0).u2(cp.classRef(wrapper));
+      code.op(0xb6).u2(cp.methodRef(wrapper, type.getName() + "Value",
+          "()" + descriptor(type)));
+      code.op(returnOpcode(type));
+    } else {
+      if (type != Object.class) {
+        code.op(0xc0).u2(cp.classRef(internalName(type)));
+      }
+      code.op(0xb0);
+    }
+  }
+
+  private static Class<?> wrapperType(Class<?> type) {
+    return MethodType.methodType(type).wrap().returnType();
+  }
+
+  private static int slotSize(Class<?> type) {
+    if (type == void.class) {
+      return 0;
+    }
+    return type == long.class || type == double.class ? 2 : 1;
+  }
+
+  private static int loadOpcode(Class<?> type) {
+    if (type == long.class) {
+      return 0x16;
+    } else if (type == float.class) {
+      return 0x17;
+    } else if (type == double.class) {
+      return 0x18;
+    } else if (type.isPrimitive()) {
+      return 0x15;
+    }
+    return 0x19;
+  }
+
+  private static int returnOpcode(Class<?> type) {
+    if (type == void.class) {
+      return 0xb1;
+    } else if (type == long.class) {
+      return 0xad;
+    } else if (type == float.class) {
+      return 0xae;
+    } else if (type == double.class) {
+      return 0xaf;
+    } else if (type.isPrimitive()) {
+      return 0xac;
+    }
+    return 0xb0;
+  }
+
+  private static String methodDescriptor(Method method) {
+    return MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+        .toMethodDescriptorString();
+  }
+
+  private static String descriptor(Class<?> type) {
+    return MethodType.methodType(type).toMethodDescriptorString().substring(2);
+  }
+
+  private static String internalName(Class<?> type) {
+    return type.isArray() ? descriptor(type) : internalName(type.getName());
+  }
+
+  private static String internalName(String className) {
+    return className.replace('.', '/');
+  }
+
+  /** A growable buffer of bytecode instructions. */
+  private static final class Code {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    Code op(int value) {
+      bytes.write(value);
+      return this;
+    }
+
+    Code u2(int value) {
+      bytes.write(value >>> 8);
+      bytes.write(value);
+      return this;
+    }
+
+    byte[] toByteArray() {
+      return bytes.toByteArray();
+    }
+  }
+
+  /** The constant pool of the generated class. */
+  private static final class ConstantPool {
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private int count = 1;
+
+    int utf8(String value) {
+      return entry("U" + value, () -> {
+        out.writeByte(1);
+        out.writeUTF(value);
+      });
+    }
+
+    int integer(int value) {
+      return entry("I" + value, () -> {
+        out.writeByte(3);
+        out.writeInt(value);
+      });
+    }
+
+    int classRef(String internalName) {
+      int name = utf8(internalName);
+      return entry("C" + internalName, () -> {
+        out.writeByte(7);
+        out.writeShort(name);
+      });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+      return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+      return memberRef(10, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+      return memberRef(11, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+      int ownerIndex = classRef(owner);
+      int nameIndex = utf8(name);
+      int descriptorIndex = utf8(descriptor);
+      int nameAndType = entry("N" + name + ":" + descriptor, () -> {
+        out.writeByte(12);
+        out.writeShort(nameIndex);
+        out.writeShort(descriptorIndex);
+      });
+      return entry(tag + owner + "." + name + ":" + descriptor, () -> {
+        out.writeByte(tag);
+        out.writeShort(ownerIndex);
+        out.writeShort(nameAndType);
+      });
+    }
+
+    private int entry(String key, Entry entry) {
+      Integer index = indexes.get(key);
+      if (index != null) {
+        return index;
+      }
+      try {
+        entry.write();
+      } catch (IOException e) {
+        throw new JBasisException(e.getMessage(), e);
+      }
+      indexes.put(key, count);
+      return count++;
+    }
+
+    void writeTo(DataOutputStream target) throws IOException {
+      out.flush();
+      target.writeShort(count);
+      target.write(bytes.toByteArray());
+    }
+
+    private interface Entry {
+      void write() throws IOException;
+    }
+  }
+}
@@ -0,0 +1,336 @@
+package jbasis.ioc;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+import jbasis.interception.Async;
+import jbasis.interception.Interceptor;
+import jbasis.interception.RateLimit;
+import jbasis.interception.Stateless;
+import jbasis.interception.Timeout;
+import jbasis.interception.WithInterceptor;
+import jbasis.util.JBasisException;
+
+/**
+ * The interceptor chain for a method of an implementation class.
+ * <p>
+ * Chains are built once per (implementation class, service method)
+ * and reused across invocations and proxy instances. Interceptor
+ * types are resolved from the method annotations and their
+ * constructors looked up when the chain is built, so an invocation
+ * only instantiates the interceptors that are not {@link Stateless}.
+ */
+final class InterceptedMethod {
+
+  private static final ClassValue<ConcurrentMap<Method, InterceptedMethod>> CACHE =
+      new ClassValue<ConcurrentMap<Method, InterceptedMethod>>() {
+        @Override
+        protected ConcurrentMap<Method, InterceptedMethod> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  private static final ClassValue<ConcurrentMap<Class<?>, Boolean>> INTERCEPTED_TYPES =
+      new ClassValue<ConcurrentMap<Class<?>, Boolean>>() {
+        @Override
+        protected ConcurrentMap<Class<?>, Boolean> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  private final Method implementationMethod;
+  private final InterceptorBinding[] bindings;
+  private final Interceptor[] shared;
+  private final boolean async;
+  private final boolean dispatched;
+  private final MethodInvoker[] invokers = new MethodInvoker[InvocationMode.values().length];
+
+  private InterceptedMethod(Method implementationMethod, InterceptorBinding[] bindings,
+      boolean async, boolean dispatched) {
+    this.implementationMethod = implementationMethod;
+    this.bindings = bindings;
+    this.async = async;
+    this.dispatched = dispatched;
+
+    Interceptor[] interceptors = new Interceptor[bindings.length];
+    for (int i = 0; i < bindings.length; i++) {
+      if (bindings[i].shared == null) {
+        interceptors = null;
+        break;
+      }
+      interceptors[i] = bindings[i].shared;
+    }
+    this.shared = interceptors;
+  }
+
+  /**
+   * Gets the interceptor chain for a service method invoked on an
+   * instance of the implementation type.
+   *
+   * @param implementationType the class of the proxied target
+   * @param serviceMethod the method invoked on the proxy
+   * @return the intercepted method
+   */
+  static InterceptedMethod of(Class<?> implementationType, Method serviceMethod) {
+    ConcurrentMap<Method, InterceptedMethod> methods = CACHE.get(implementationType);
+    InterceptedMethod intercepted = methods.get(serviceMethod);
+    if (intercepted == null) {
+      intercepted = compile(implementationType, serviceMethod);
+      InterceptedMethod existing = methods.putIfAbsent(serviceMethod, intercepted);
+      if (existing != null) {
+        intercepted = existing;
+      }
+    }
+    return intercepted;
+  }
+
+  /**
+   * Determines whether calls to a service method must be dispatched
+   * through the interceptor chain, without building the chain.
+   *
+   * @param implementationType the class of the proxied target
+   * @param serviceMethod the method invoked on the proxy
+   * @return true if the implementation method carries annotations
+   */
+  static boolean isIntercepted(Class<?> implementationType, Method serviceMethod) {
+    return findImplementationMethod(implementationType, serviceMethod)
+        .getAnnotations().length > 0;
+  }
+
+  /**
+   * Determines whether any method of a service interface is
+   * intercepted on the implementation type. The answer is computed
+   * once per (implementation class, service interface); services
+   * without intercepted methods do not need a proxy at all.
+   *
+   * @param implementationType the class of the service instance
+   * @param serviceType the service interface
+   * @return true if at least one service method is intercepted
+   */
+  static boolean isIntercepted(Class<?> implementationType, Class<?> serviceType) {
+    ConcurrentMap<Class<?>, Boolean> types = INTERCEPTED_TYPES.get(implementationType);
+    Boolean intercepted = types.get(serviceType);
+    if (intercepted == null) {
+      intercepted = types.computeIfAbsent(serviceType,
+          type -> hasInterceptedMethods(implementationType, type));
+    }
+    return intercepted;
+  }
+
+  private static boolean hasInterceptedMethods(Class<?> implementationType,
+      Class<?> serviceType) {
+    for (Method method : serviceType.getMethods()) {
+      if (!Modifier.isStatic(method.getModifiers())
+          && isIntercepted(implementationType, method)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  Method getImplementationMethod() {
+    return implementationMethod;
+  }
+
+  /**
+   * Determines whether the service method is declared to return a
+   * CompletionStage, CompletableFuture or Future, in which case the
+   * proxy may return a CompletableFuture that completes once the
+   * interceptors have seen the outcome of the call.
+   *
+   * @return true if the call may complete asynchronously
+   */
+  boolean isAsync() {
+    return async;
+  }
+
+  /**
+   * Determines whether the implementation method is annotated with
+   * {@link Async}, in which case the proxy submits it to the executor
+   * of the container instead of invoking it on the calling thread.
+   *
+   * @return true if the call is dispatched to the executor
+   */
+  boolean isDispatched() {
+    return dispatched;
+  }
+
+  /**
+   * Gets the invoker used to call the implementation method.
+   *
+   * @param mode the invocation mode
+   * @return the cached invoker
+   */
+  MethodInvoker invoker(InvocationMode mode) {
+    MethodInvoker invoker = invokers[mode.ordinal()];
+    if (invoker == null) {
+      invoker = MethodInvoker.of(implementationMethod, mode);
+      invokers[mode.ordinal()] = invoker;
+    }
+    return invoker;
+  }
+
+  /**
+   * Gets the interceptors for a single invocation. Stateless
+   * interceptors are shared, all others are instantiated for
+   * the call.
+   *
+   * @param serviceFactory the factory given to per-call interceptors
+   * @return the interceptors in annotation order
+   */
+  Interceptor[] interceptors(ServiceFactory serviceFactory) {
+    if (shared != null) {
+      return shared;
+    }
+    Interceptor[] interceptors = new Interceptor[bindings.length];
+    for (int i = 0; i < bindings.length; i++) {
+      interceptors[i] = bindings[i].get(serviceFactory);
+    }
+    return interceptors;
+  }
+
+  private static InterceptedMethod compile(Class<?> implementationType, Method serviceMethod) {
+    Method implementationMethod = findImplementationMethod(implementationType, serviceMethod);
+    makeAccessible(implementationMethod);
+
+    Class<?> returnType = serviceMethod.getReturnType();
+    boolean async = returnType == CompletionStage.class
+        || returnType == CompletableFuture.class
+        || returnType == Future.class;
+
+    boolean dispatched = false;
+    int timeout = -1;
+    List<InterceptorBinding> bindings = new ArrayList<>();
+    for (Annotation annotation : implementationMethod.getAnnotations()) {
+      if (annotation.annotationType() == Async.class) {
+        if (!async) {
+          throw new JBasisException("@Async method " + implementationMethod
+              + " must return a CompletableFuture, CompletionStage or Future");
+        }
+        dispatched = true;
+      } else {
+        if (annotation instanceof RateLimit) {
+          validate((RateLimit) annotation, implementationMethod);
+        }
+        if (annotation instanceof Timeout) {
+          timeout = bindings.size();
+        }
+        bindings.add(new InterceptorBinding(annotation));
+      }
+    }
+    // the async path of @Timeout proceeds from beforeInvoke itself, so
+    // the interceptors after it would never run
+    if (async && timeout >= 0 && timeout < bindings.size() - 1) {
+      throw new JBasisException("@Timeout on async method "
+          + implementationMethod.getDeclaringClass().getName() + "."
+          + implementationMethod.getName() + " must be declared after its other interceptors");
+    }
+    return new InterceptedMethod(implementationMethod,
+        bindings.toArray(new InterceptorBinding[0]), async, dispatched);
+  }
+
+  private static void validate(RateLimit rateLimit, Method method) {
+    int keyArgument = rateLimit.keyArgument();
+    if (keyArgument >= method.getParameterCount()) {
+      throw new JBasisException("keyArgument " + keyArgument + " of @RateLimit on "
+          + method.getDeclaringClass().getName() + "." + method.getName() + " must be below "
+          + "the number of parameters, " + method.getParameterCount());
+    }
+  }
+
+  private static Method findImplementationMethod(Class<?> implementationType,
+      Method serviceMethod) {
+    for (Class<?> type = implementationType; type != null; type = type.getSuperclass()) {
+      try {
+        return type.getDeclaredMethod(serviceMethod.getName(),
+            serviceMethod.getParameterTypes());
+      } catch (NoSuchMethodException e) {
+        // keep looking in the superclass
+      }
+    }
+    return serviceMethod;
+  }
+
+  // suppress SonarQube Security Hotspot warning
+  @java.lang.SuppressWarnings("squid:S3011")
+  private static void makeAccessible(AccessibleObject member) {
+    member.setAccessible(true);
+  }
+
+  private static final class InterceptorBinding {
+    private final Annotation annotation;
+    private final Constructor<?> constructor;
+    private final Interceptor shared;
+
+    InterceptorBinding(Annotation annotation) {
+      this.annotation = annotation;
+      Class<?> interceptorClass = resolveInterceptorClass(annotation);
+      this.constructor = resolveConstructor(interceptorClass, annotation);
+      this.shared = interceptorClass.isAnnotationPresent(Stateless.class)
+          ? newInstance() : null;
+    }
+
+    Interceptor get(ServiceFactory serviceFactory) {
+      if (shared != null) {
+        return shared;
+      }
+      Interceptor interceptor = newInstance();
+      interceptor.setServiceFactory(serviceFactory);
+      return interceptor;
+    }
+
+    private Interceptor newInstance() {
+      try {
+        return (Interceptor) constructor.newInstance(annotation);
+      } catch (InvocationTargetException e) {
+        throw new JBasisException(e.getCause().getMessage(), e.getCause());
+      } catch (InstantiationException | IllegalAccessException | IllegalArgumentException e) {
+        throw new JBasisException(e.getMessage(), e);
+      }
+    }
+
+    private static Class<?> resolveInterceptorClass(Annotation annotation) {
+      try {
+        var withInterceptor = annotation.annotationType()
+            .getAnnotation(WithInterceptor.class);
+
+        if (withInterceptor != null) {
+          return withInterceptor.type();
+        }
+
+        Method method = annotation.getClass().getMethod("withInterceptor");
+        makeAccessible(method);
+        return (Class<?>) method.invoke(annotation);
+      } catch (InvocationTargetException e) {
+        throw new JBasisException(e.getCause().getMessage(), e.getCause());
+      } catch (IllegalAccessException | IllegalArgumentException | NoSuchMethodException
+          | SecurityException e) {
+        throw new JBasisException(e.getMessage(), e);
+      }
+    }
+
+    private static Constructor<?> resolveConstructor(Class<?> interceptorClass,
+        Annotation annotation) {
+      for (Constructor<?> constructor : interceptorClass.getConstructors()) {
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        if (parameterTypes.length == 1
+            && parameterTypes[0].isAssignableFrom(annotation.annotationType())) {
+          makeAccessible(constructor);
+          return constructor;
+        }
+      }
+      throw new JBasisException("Constructor expected for interceptor but none was found.");
+    }
+  }
+}
@@ -1,42 +1,36 @@
 package jbasis.ioc;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 
 import jbasis.interception.Interceptor;
-import jbasis.interception.WithInterceptor;
 import jbasis.util.JBasisException;
 
 class InterceptionInvocationHandler implements InvocationHandler {
 
-  private final Map<String, Method> methods = new HashMap<>();
   private ServiceFactory serviceFactory;
   private Object target;
+  private InvocationMode invocationMode;
+  private AsyncExecutor asyncExecutor;
 
   /**
    * Proxy builder for Container registered services.
-   * 
+   *
    * @param container the Container for resolving services.
    * @param target the target Object to be wrapped in a proxy.
+   * @param invocationMode how the target methods are invoked.
+   * @param asyncExecutor runs the methods annotated with Async.
    */
-  public InterceptionInvocationHandler(ServiceFactory serviceFactory, Object target) {
+  public InterceptionInvocationHandler(ServiceFactory serviceFactory, Object target,
+      InvocationMode invocationMode, AsyncExecutor asyncExecutor) {
     this.serviceFactory = serviceFactory;
     this.target = target;
-
-    for (Method method : target.getClass().getDeclaredMethods()) {
-      makeAccessible(method);
-      var key = getMethodKey(method);
-      this.methods.put(key, method);
-    }
+    this.invocationMode = invocationMode;
+    this.asyncExecutor = asyncExecutor;
   }
 
   @Override
@@ -48,109 +42,237 @@ class InterceptionInvocationHandler implements InvocationHandler {
       return proxy == args[0];
     }
 
-    var key = getMethodKey(serviceMethod);
-    var implementationMethod = methods.get(key);
-    var interceptors = resolveInterceptors(implementationMethod);
-
-    for (Interceptor interceptor : interceptors) {
-      boolean continueExecuting = interceptor.beforeInvoke(proxy, target, implementationMethod, args);
-      if (!continueExecuting) {
-        return null;
-      }
+    var intercepted = InterceptedMethod.of(target.getClass(), serviceMethod);
+    var context = new InvocationContextImpl(proxy, target,
+        intercepted.getImplementationMethod(), args, serviceFactory,
+        intercepted.invoker(invocationMode), asyncExecutor, intercepted.isDispatched(),
+        intercepted.interceptors(serviceFactory), intercepted.isAsync());
+    try {
+      return run(context, 0, true);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new JBasisException(t.getMessage(), t);
     }
+  }
 
-    Object result = null;
-    var wasHandled = false;
+  /**
+   * Runs the interceptors of a call from the given position, invokes
+   * the method and completes the call. The proxy runs the whole chain;
+   * {@link InvocationContextImpl#proceed()} runs the part of it from an
+   * Interceptor that rejected the call.
+   *
+   * @param context the state of the call
+   * @param from the position of the first Interceptor to run
+   * @param wrap whether an unhandled exception of the method is wrapped
+   *     in a JBasisException, as it is for the caller of the proxy
+   * @return the result of the call
+   * @throws Throwable the unhandled exception of the method
+   */
+  static Object run(InvocationContextImpl context, int from, boolean wrap) throws Throwable {
+    Interceptor[] interceptors = context.interceptors;
+    int count = from;
+    var pending = from;
     try {
-      
-      result = implementationMethod.invoke(target, args);
-    } catch (Exception ex) {
-      for (Interceptor interceptor : interceptors) {
-        boolean handled = interceptor.onError(proxy, target, implementationMethod, args, ex);
-        if (handled) {
-          wasHandled = true;
+      for (; count < interceptors.length; count++) {
+        context.position = count;
+        boolean continueExecuting;
+        try {
+          continueExecuting = interceptors[count].beforeInvoke(context);
+        } catch (RuntimeException | Error ex) {
+          pending = handleError(context, from, count, ex);
+          if (pending < 0) {
+            throw ex;
+          }
+          continueExecuting = false;
+        }
+        if (!continueExecuting) {
           break;
         }
       }
-      if (!wasHandled) {
-        var cause = ex.getCause();
-        throw new JBasisException(cause.getMessage(), cause);
+
+      if (count == interceptors.length) {
+        if (context.dispatched) {
+          context.setResult(context.executor.submit(context.invoker, context.getTarget(),
+              context.getArguments()));
+        } else {
+          try {
+            context.setResult(context.invoker.invoke(context.getTarget(),
+                context.getArguments()));
+          } catch (Throwable ex) {
+            pending = handleError(context, from, count, ex);
+            if (pending < 0) {
+              throw wrap ? new JBasisException(ex.getMessage(), ex) : ex;
+            }
+          }
+        }
       }
-    }
 
-    while (!interceptors.isEmpty()) {
-      var interceptor = interceptors.pop();
-      interceptor.afterInvoke(proxy, target, implementationMethod, args, result);
+      if (context.async && context.getResult() instanceof CompletionStage) {
+        CompletableFuture<Object> promise = new CompletableFuture<>();
+        complete(context, from, count, (CompletionStage<?>) context.getResult(),
+            pending, promise);
+        return promise;
+      }
+      afterInvoke(context, from, count);
+    } catch (Throwable t) {
+      finish(context, from, count, t);
+      throw t;
     }
+    finish(context, from, count, null);
+    return context.getResult();
+  }
 
-    return result;
+  /**
+   * Waits, without blocking, for the stage returned by an async method
+   * and then runs onError or afterInvoke, and onComplete, on the thread
+   * that completed it. A failure is only passed to the onError of the
+   * interceptors from pending, which have not seen an error of the
+   * call yet: if an Interceptor handles an error by returning another
+   * stage and that stage fails, the failure is passed to the
+   * interceptors after the one that handled the first error.
+   */
+  private static void complete(InvocationContextImpl context, int from, int count,
+      CompletionStage<?> stage, int pending, CompletableFuture<Object> promise) {
+    stage.whenComplete((value, error) -> {
+      Throwable failure = null;
+      try {
+        if (error == null) {
+          context.setResult(value);
+        } else {
+          failure = unwrap(error);
+          int next = handleError(context, pending, count, failure);
+          if (next >= 0 && context.getResult() instanceof CompletionStage) {
+            complete(context, from, count, (CompletionStage<?>) context.getResult(),
+                next, promise);
+            return;
+          }
+          if (next >= 0) {
+            failure = null;
+          }
+        }
+        if (failure == null) {
+          afterInvoke(context, from, count);
+        }
+      } catch (Throwable t) {
+        failure = t;
+      }
+      try {
+        finish(context, from, count, failure);
+      } catch (Throwable t) {
+        failure = t;
+      }
+      if (failure == null) {
+        promise.complete(context.getResult());
+      } else {
+        promise.completeExceptionally(failure);
+      }
+    });
   }
 
-  private Deque<Interceptor> resolveInterceptors(Method implementationMethod) {
-    var interceptors = new ArrayDeque<Interceptor>();
-    for (var annotation : implementationMethod.getAnnotations()) {
-      var interceptor = resolveInterceptor(annotation);
-      interceptor.setServiceFactory(serviceFactory);
-      interceptors.add(interceptor);
+  /**
+   * Passes an error to the onError of the interceptors from the given
+   * position up to count, which are the ones whose beforeInvoke has
+   * run. When count is below the length of the chain, the Interceptor
+   * at count rejected the call, and an Interceptor that handles the
+   * error by proceeding re-enters the chain there. An Interceptor that
+   * throws replaces the error: the interceptors after it are passed
+   * the new error and, unless one of them handles it, it is thrown
+   * once all of them have run.
+   *
+   * @return the position after the Interceptor that handled the error,
+   *     or -1 if none did
+   */
+  private static int handleError(InvocationContextImpl context, int from, int count,
+      Throwable ex) {
+    Interceptor[] interceptors = context.interceptors;
+    context.reentry = count;
+    Throwable failure = null;
+    for (int i = from; i < count; i++) {
+      context.position = i;
+      try {
+        if (interceptors[i].onError(context, ex)) {
+          return i + 1;
+        }
+      } catch (RuntimeException | Error e) {
+        if (failure != null) {
+          e.addSuppressed(failure);
+        }
+        failure = e;
+        ex = e;
+      }
+    }
+    if (failure != null) {
+      throwUnchecked(failure);
     }
-    return interceptors;
+    return -1;
   }
 
-  private Interceptor resolveInterceptor(Annotation annotation) {
-    Class<?> interceptorClass = null;
-
-    try {
-      var withInterceptor = annotation.annotationType()
-          .getAnnotation(WithInterceptor.class);
-  
-      if (withInterceptor == null) {
-        Method method;
-        method = annotation.getClass().getMethod("withInterceptor");
-        makeAccessible(method);
-        interceptorClass = (Class<?>) method.invoke(annotation);
-      } else {
-        interceptorClass = withInterceptor.type();
+  /**
+   * Runs the afterInvoke of the interceptors from the given position
+   * up to count, which are the ones whose beforeInvoke has run. Every
+   * one of them runs even if one throws, and the first failure is
+   * thrown afterwards.
+   */
+  private static void afterInvoke(InvocationContextImpl context, int from, int count) {
+    Interceptor[] interceptors = context.interceptors;
+    Throwable failure = null;
+    for (int i = from; i < count; i++) {
+      context.position = i;
+      try {
+        interceptors[i].afterInvoke(context);
+      } catch (RuntimeException | Error e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
       }
-    } catch (InvocationTargetException e) {
-      throw new JBasisException(e.getCause().getMessage(), e.getCause());
-    } catch (IllegalAccessException | IllegalArgumentException | NoSuchMethodException | SecurityException e) {
-      throw new JBasisException(e.getMessage(), e);
     }
-
-    var optCtor = Arrays.asList(interceptorClass.getConstructors()).stream().findFirst();
-    
-    if (!optCtor.isPresent()) {
-      throw new JBasisException("Constructor expected for interceptor but none was found.");
+    if (failure != null) {
+      throwUnchecked(failure);
     }
-    
-    var constructor = optCtor.get();
-  
-    makeAccessible(constructor);
+  }
 
-    try {
-      return (Interceptor) constructor.newInstance(annotation);
-    } catch (InvocationTargetException e) {
-      throw new JBasisException(e.getCause().getMessage(), e.getCause());
-    } catch (InstantiationException | IllegalAccessException | IllegalArgumentException e) {
-      throw new JBasisException(e.getMessage(), e);
+  /**
+   * Runs the onComplete of the interceptors from the given position up
+   * to count once the call has completed. Every one of them runs even
+   * if one throws. A failure is added to the exception the call
+   * completed with, or thrown if it completed normally.
+   */
+  private static void finish(InvocationContextImpl context, int from, int count,
+      Throwable thrown) {
+    Interceptor[] interceptors = context.interceptors;
+    Throwable failure = thrown;
+    for (int i = from; i < count; i++) {
+      context.position = i;
+      try {
+        interceptors[i].onComplete(context);
+      } catch (RuntimeException | Error e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null && thrown == null) {
+      throwUnchecked(failure);
     }
   }
 
-  // suppress SonarQube Security Hotspot warning
-  @java.lang.SuppressWarnings("squid:S3011")
-  private void makeAccessible(AccessibleObject member) {
-    member.setAccessible(true); 
+  private static void throwUnchecked(Throwable failure) {
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    throw (RuntimeException) failure;
   }
-  
-  private static String getMethodKey(Method m) {
-    var sb = new StringBuilder();
-    sb.append(m.getName());
-    sb.append(":");
-    var parameterTypeNames = new ArrayList<String>();
-    for (Class<?> p : m.getParameterTypes()) {
-      sb.append(p.getName());
+
+  private static Throwable unwrap(Throwable error) {
+    if ((error instanceof CompletionException || error instanceof ExecutionException)
+        && error.getCause() != null) {
+      return error.getCause();
     }
-    sb.append(String.join(":", parameterTypeNames));
-    return sb.toString();
+    return error;
   }
 }
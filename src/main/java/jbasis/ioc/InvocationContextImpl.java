@@ -0,0 +1,149 @@
+package jbasis.ioc;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import jbasis.interception.Interceptor;
+import jbasis.interception.InvocationContext;
+
+/**
+ * Default InvocationContext implementation. Attribute slots are
+ * only allocated once an Interceptor stores an attribute.
+ * <p>
+ * The context also carries the chain of the call, so that proceeding
+ * after an Interceptor rejected the call runs the chain again from
+ * that Interceptor instead of bypassing it.
+ */
+final class InvocationContextImpl implements InvocationContext {
+  private final Object proxy;
+  private final Object target;
+  private final Method method;
+  private final Object[] arguments;
+  private final ServiceFactory serviceFactory;
+  final MethodInvoker invoker;
+  final AsyncExecutor executor;
+  final boolean dispatched;
+  final Interceptor[] interceptors;
+  final boolean async;
+  private Object[] attributes;
+  private long[] longAttributes;
+  private Object result;
+
+  /** The position in the chain of the Interceptor being called. */
+  int position;
+
+  /**
+   * The position from which proceed runs the chain: the Interceptor
+   * that rejected the call, or the length of the chain to invoke the
+   * method directly.
+   */
+  int reentry;
+
+  InvocationContextImpl(Object proxy, Object target, Method method, Object[] arguments,
+      ServiceFactory serviceFactory, MethodInvoker invoker, AsyncExecutor executor,
+      boolean dispatched, Interceptor[] interceptors, boolean async) {
+    this.proxy = proxy;
+    this.target = target;
+    this.method = method;
+    this.arguments = arguments;
+    this.serviceFactory = serviceFactory;
+    this.invoker = invoker;
+    this.executor = executor;
+    this.dispatched = dispatched;
+    this.interceptors = interceptors;
+    this.async = async;
+    this.reentry = interceptors.length;
+  }
+
+  @Override
+  public Object getProxy() {
+    return proxy;
+  }
+
+  @Override
+  public Object getTarget() {
+    return target;
+  }
+
+  @Override
+  public Method getMethod() {
+    return method;
+  }
+
+  @Override
+  public Object[] getArguments() {
+    return arguments;
+  }
+
+  @Override
+  public ServiceFactory getServiceFactory() {
+    return serviceFactory;
+  }
+
+  @Override
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  @Override
+  public Object getResult() {
+    return result;
+  }
+
+  @Override
+  public void setResult(Object result) {
+    this.result = result;
+  }
+
+  @Override
+  public Object getAttribute() {
+    return attributes == null ? null : attributes[position];
+  }
+
+  @Override
+  public void setAttribute(Object value) {
+    if (attributes == null) {
+      attributes = new Object[interceptors.length];
+    }
+    attributes[position] = value;
+  }
+
+  @Override
+  public long getLongAttribute() {
+    return longAttributes == null ? 0 : longAttributes[position];
+  }
+
+  @Override
+  public void setLongAttribute(long value) {
+    if (longAttributes == null) {
+      longAttributes = new long[interceptors.length];
+    }
+    longAttributes[position] = value;
+  }
+
+  @Override
+  public Object proceed() throws Throwable {
+    int from = reentry;
+    if (from < interceptors.length) {
+      // the rejecting Interceptor and those after it run again, and
+      // proceeding within them invokes the method directly
+      int caller = position;
+      reentry = interceptors.length;
+      try {
+        Object result = InterceptionInvocationHandler.run(this, from, false);
+        if (result instanceof CompletableFuture) {
+          return ((CompletableFuture<?>) result).whenComplete((value, error) -> reentry = from);
+        }
+        return result;
+      } finally {
+        reentry = from;
+        position = caller;
+      }
+    }
+    if (dispatched) {
+      return executor.submit(invoker, target, arguments);
+    }
+    return invoker.invoke(target, arguments);
+  }
+}
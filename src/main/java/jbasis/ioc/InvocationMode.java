@@ -0,0 +1,40 @@
+package jbasis.ioc;
+
+/**
+ * Defines how a Container invokes constructors and proxied
+ * service methods.
+ * <p>
+ * The default mode is read from the {@code jbasis.invocationMode} 
+ * system property so that both modes can be compared without 
+ * rebuilding an application. It may be overridden per Container 
+ * with {@link ContainerConfigurer#useInvocationMode}.
+ */
+public enum InvocationMode {
+  /**
+   * Invokes through java.lang.reflect.Method and Constructor.
+   */
+  REFLECTION,
+
+  /**
+   * Invokes through cached, type-adapted MethodHandles, avoiding 
+   * reflective access checks and InvocationTargetException 
+   * wrapping on every call.
+   */
+  METHOD_HANDLE;
+
+  /**
+   * The name of the system property used to select the default mode.
+   */
+  public static final String PROPERTY = "jbasis.invocationMode";
+
+  /**
+   * Gets the default invocation mode.
+   * 
+   * @return the mode named by the jbasis.invocationMode system 
+   *     property, or METHOD_HANDLE if the property is not set
+   */
+  public static InvocationMode getDefault() {
+    String mode = System.getProperty(PROPERTY);
+    return mode == null ? METHOD_HANDLE : valueOf(mode.trim().toUpperCase());
+  }
+}
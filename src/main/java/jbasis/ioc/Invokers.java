@@ -0,0 +1,98 @@
+package jbasis.ioc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates method and constructor invokers for each
+ * {@link InvocationMode}.
+ * <p>
+ * Invokers are not cached here: a static map keyed by Method would
+ * keep the declaring classes and their class loaders reachable.
+ * Callers keep the invokers they create alongside the metadata they
+ * already cache per class, such as {@link ResolutionPlan} and the
+ * intercepted methods of a proxy.
+ * <p>
+ * MethodHandle invokers are adapted to a single erased shape,
+ * (Object, Object[])Object for methods and (Object[])Object for
+ * constructors, so they can be called with invokeExact. Members
+ * that cannot be unreflected fall back to core reflection, which
+ * reports the access failure when invoked.
+ */
+final class Invokers {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final Object[] NO_ARGS = new Object[0];
+  private static final MethodType METHOD_TYPE =
+      MethodType.methodType(Object.class, Object.class, Object[].class);
+  private static final MethodType CONSTRUCTOR_TYPE =
+      MethodType.methodType(Object.class, Object[].class);
+
+  private Invokers() {}
+
+  static MethodInvoker method(Method method, InvocationMode mode) {
+    return mode == InvocationMode.METHOD_HANDLE ? methodHandle(method) : reflective(method);
+  }
+
+  static ConstructorInvoker constructor(Constructor<?> constructor, InvocationMode mode) {
+    if (mode == InvocationMode.METHOD_HANDLE) {
+      try {
+        MethodHandle handle = LOOKUP.unreflectConstructor(constructor)
+            .asSpreader(Object[].class, constructor.getParameterCount())
+            .asType(CONSTRUCTOR_TYPE);
+        return args -> (Object) handle.invokeExact(args);
+      } catch (IllegalAccessException e) {
+        // fall through to reflection
+      }
+    }
+    return args -> {
+      try {
+        return constructor.newInstance(args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    };
+  }
+
+  private static MethodInvoker methodHandle(Method method) {
+    MethodHandle handle;
+    try {
+      handle = LOOKUP.unreflect(method);
+    } catch (IllegalAccessException e) {
+      return reflective(method);
+    }
+    if (Modifier.isStatic(method.getModifiers())) {
+      handle = MethodHandles.dropArguments(handle, 0, Object.class);
+    }
+    MethodHandle spreader = handle.asType(handle.type().generic())
+        .asSpreader(Object[].class, method.getParameterCount())
+        .asType(METHOD_TYPE);
+    return (target, args) -> {
+      Object[] arguments = args == null ? NO_ARGS : args;
+      return (Object) spreader.invokeExact(target, arguments);
+    };
+  }
+
+  private static MethodInvoker reflective(Method method) {
+    return (target, args) -> {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    };
+  }
+
+  /**
+   * Creates instances through a constructor.
+   */
+  @FunctionalInterface
+  interface ConstructorInvoker {
+    Object newInstance(Object[] args) throws Throwable;
+  }
+}
@@ -1,16 +1,24 @@
 package jbasis.ioc;
 
-import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 /**
  * Lazy will memoize a Supplier function so that the Supplier 
  * is executed no more than once and, if executed, will return 
  * the same value on all subsequent calls to get().
+ * <p>
+ * Once the value exists, apply is a single volatile read with 
+ * no locking or allocation. The lock is only taken while the 
+ * value is being created. A ReentrantLock is used rather than a 
+ * monitor so that a virtual thread waiting on the lock does not 
+ * pin its carrier thread.
  */
 public final class LazyFactory<T> implements Function<ServiceFactory, T> {
-  private Object lock = new Object();
-  private Optional<T> instance = Optional.empty();
+  private static final Object UNSET = new Object();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile Object instance = UNSET;
   private Function<ServiceFactory, T> function;
 
   public LazyFactory(Function<ServiceFactory, T> theFunction) {
@@ -18,17 +26,31 @@ public final class LazyFactory<T> implements Function<ServiceFactory, T> {
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public final T apply(ServiceFactory sf) {
-    synchronized (lock) {
-      if (!instance.isPresent()) {
-        instance = Optional.of(function.apply(sf));
-      }
+    Object value = instance;
+    if (value == UNSET) {
+      value = initialize(sf);
+    }
+    return (T) value;
+  }
 
-      return instance.get();
+  private Object initialize(ServiceFactory sf) {
+    lock.lock();
+    try {
+      Object value = instance;
+      if (value == UNSET) {
+        value = function.apply(sf);
+        instance = value;
+        function = null;
+      }
+      return value;
+    } finally {
+      lock.unlock();
     }
   }
 
   public final boolean isPresent() {
-    return instance.isPresent();
+    return instance != UNSET;
   }
 }
@@ -0,0 +1,48 @@
+package jbasis.ioc;
+
+import java.lang.reflect.Method;
+
+/**
+ * Invokes a method on a target object.
+ * <p>
+ * Unlike Method.invoke, exceptions thrown by the invoked method 
+ * are rethrown as is rather than wrapped in an 
+ * InvocationTargetException.
+ */
+@FunctionalInterface
+public interface MethodInvoker {
+
+  /**
+   * Invokes the method.
+   * 
+   * @param target the object the method is invoked on
+   * @param args the method arguments, or null if there are none
+   * @return the method result, or null for void methods
+   * @throws Throwable the exception thrown by the method
+   */
+  Object invoke(Object target, Object[] args) throws Throwable;
+
+  /**
+   * Creates an invoker for the method using the default 
+   * invocation mode.
+   * 
+   * @param method the method to invoke
+   * @return the invoker
+   */
+  static MethodInvoker of(Method method) {
+    return of(method, InvocationMode.getDefault());
+  }
+
+  /**
+   * Creates an invoker for the method. Invokers are not cached, 
+   * so callers invoking the method repeatedly should keep the one 
+   * returned.
+   * 
+   * @param method the method to invoke
+   * @param mode the invocation mode
+   * @return the invoker
+   */
+  static MethodInvoker of(Method method, InvocationMode mode) {
+    return Invokers.method(method, mode);
+  }
+}
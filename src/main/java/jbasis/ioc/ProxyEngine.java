@@ -0,0 +1,44 @@
+package jbasis.ioc;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Defines how a Container wraps interface services in
+ * intercepting proxies.
+ */
+public enum ProxyEngine {
+  /**
+   * Proxies are created with java.lang.reflect.Proxy. Every call
+   * is dispatched through the InvocationHandler.
+   */
+  JDK {
+    @Override
+    Object createProxy(Class<?> serviceType, Object target,
+        InterceptionInvocationHandler handler) {
+      return Proxy.newProxyInstance(ContainerImpl.class.getClassLoader(),
+          new Class[] {serviceType}, handler);
+    }
+  },
+
+  /**
+   * A proxy class is generated per service interface and
+   * implementation. Methods without interceptors call the
+   * target directly so the JIT can inline through the proxy;
+   * only intercepted methods are dispatched through the
+   * InvocationHandler.
+   * <p>
+   * Interfaces that cannot be linked from the jbasis class
+   * loader fall back to the JDK engine.
+   */
+  GENERATED {
+    @Override
+    Object createProxy(Class<?> serviceType, Object target,
+        InterceptionInvocationHandler handler) {
+      Object proxy = GeneratedProxies.create(serviceType, target, handler);
+      return proxy != null ? proxy : JDK.createProxy(serviceType, target, handler);
+    }
+  };
+
+  abstract Object createProxy(Class<?> serviceType, Object target,
+      InterceptionInvocationHandler handler);
+}
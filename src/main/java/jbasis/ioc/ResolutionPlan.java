@@ -0,0 +1,164 @@
+package jbasis.ioc;
+
+import java.lang.reflect.Constructor;
+import java.util.function.Function;
+
+import jbasis.logging.Logger;
+import jbasis.util.JBasisException;
+
+/**
+ * A plan describing how to create an instance of a registered
+ * service.
+ * <p>
+ * Plans are compiled once when a service is registered. The
+ * constructor is chosen up front and its dependencies are bound
+ * to their factories by {@link #bind} once all services have been
+ * registered, before the container is used, so that resolving a
+ * service is a straight walk over an array of dependency factories
+ * without querying reflection metadata. A plan is not changed after
+ * it has been bound.
+ */
+final class ResolutionPlan {
+
+  private static final ContainerImpl.FactoryDescriptor[] NO_DEPENDENCIES =
+      new ContainerImpl.FactoryDescriptor[0];
+
+  private final Function<ServiceFactory, Object> factory;
+  private final Class<?> serviceType;
+  private final ServiceLifetime lifetime;
+  private final Class<?> implementationType;
+  private final Constructor<?> constructor;
+  private final Invokers.ConstructorInvoker invoker;
+  private final boolean proxied;
+  private ContainerImpl.FactoryDescriptor[] dependencies = NO_DEPENDENCIES;
+
+  private ResolutionPlan(ServiceDescriptor descriptor, Constructor<?> constructor,
+      InvocationMode mode) {
+    this.factory = descriptor.getFactory();
+    this.serviceType = descriptor.getServiceType();
+    this.lifetime = descriptor.getServiceLifetime();
+    this.implementationType = descriptor.getImplementationType();
+    this.constructor = constructor;
+    this.invoker = constructor != null ? Invokers.constructor(constructor, mode) : null;
+    this.proxied = serviceType.isInterface();
+  }
+
+  /**
+   * Compiles a plan for the described service.
+   *
+   * @param descriptor the service descriptor
+   * @param mode how the chosen constructor is invoked
+   * @return the resolution plan
+   */
+  static ResolutionPlan compile(ServiceDescriptor descriptor, InvocationMode mode) {
+    Constructor<?> constructor = null;
+    if (descriptor.getFactory() == null) {
+      constructor = selectConstructor(descriptor.getImplementationType());
+    }
+    return new ResolutionPlan(descriptor, constructor, mode);
+  }
+
+  /**
+   * Chooses the constructor with the most parameters. When more than
+   * one constructor has the same number of parameters the first one
+   * declared wins.
+   */
+  private static Constructor<?> selectConstructor(Class<?> implementationType) {
+    Constructor<?> selected = null;
+    for (Constructor<?> candidate : implementationType.getDeclaredConstructors()) {
+      if (selected == null
+          || candidate.getParameterCount() > selected.getParameterCount()) {
+        selected = candidate;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Binds constructor dependencies to their registered factories.
+   * Dependencies that are not registered are satisfied with null.
+   *
+   * @param descriptors looks up the registered factory of a type
+   */
+  void bind(Function<Class<?>, ContainerImpl.FactoryDescriptor> descriptors) {
+    if (constructor == null || constructor.getParameterCount() == 0) {
+      return;
+    }
+    Class<?>[] dependencyTypes = constructor.getParameterTypes();
+    ContainerImpl.FactoryDescriptor[] bound =
+        new ContainerImpl.FactoryDescriptor[dependencyTypes.length];
+    for (int i = 0; i < dependencyTypes.length; i++) {
+      bound[i] = descriptors.apply(dependencyTypes[i]);
+    }
+    this.dependencies = bound;
+  }
+
+  boolean isProxied() {
+    return proxied;
+  }
+
+  Class<?> getServiceType() {
+    return serviceType;
+  }
+
+  ServiceLifetime getLifetime() {
+    return lifetime;
+  }
+
+  /**
+   * @return the bound constructor dependencies, with null for those
+   *     that are not registered
+   */
+  ContainerImpl.FactoryDescriptor[] getDependencies() {
+    return dependencies;
+  }
+
+  /**
+   * @return true if the service is created by a registered factory
+   *     function, whose dependencies are not known
+   */
+  boolean hasFactory() {
+    return factory != null;
+  }
+
+  /**
+   * Creates a new, unproxied instance of the service.
+   *
+   * @param context the service factory passed to registered factories
+   * @param dependencyContext the container used to resolve
+   *     constructor dependencies
+   * @param logger the logger used to trace dependency resolution
+   * @return the service instance
+   */
+  Object create(ServiceFactory context, ContainerImpl dependencyContext, Logger logger) {
+    if (factory != null) {
+      return factory.apply(context);
+    }
+
+    if (constructor == null) {
+      throw new JBasisException("No constructors found for " + implementationType.getTypeName());
+    }
+
+    ContainerImpl.FactoryDescriptor[] bound = dependencies;
+    Object[] args = new Object[bound.length];
+    for (int i = 0; i < bound.length; i++) {
+      ContainerImpl.FactoryDescriptor dependency = bound[i];
+      if (dependency != null) {
+        logger.debug("AUTORESOLVE - {} for {}", dependency.serviceType.getTypeName(),
+            implementationType.getName());
+        args[i] = dependencyContext.resolveDependency(dependency);
+        logger.info("Resolved {} dependency for {}", dependency.serviceType.getTypeName(),
+            implementationType.getName());
+      }
+    }
+
+    try {
+      return invoker.newInstance(args);
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      // the invoker rethrows what the constructor threw, unwrapped
+      throw new JBasisException(t.getMessage(), t);
+    }
+  }
+}
@@ -1,7 +1,7 @@
 package jbasis.ioc;
 
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Spliterator;
 import java.util.function.Consumer;
@@ -16,10 +16,10 @@ import jbasis.logging.LoggerFactory;
 public final class ServiceCollectionImpl implements ServiceCollection {
 
   private Logger logger = LoggerFactory.get(getClass());
-  private Map<String, ServiceDescriptor> services;
+  private Map<Class<?>, ServiceDescriptor> services;
 
   public ServiceCollectionImpl() {
-    this.services = new HashMap<>();
+    this.services = new LinkedHashMap<>();
   }
 
   @Override
@@ -45,12 +45,12 @@ public final class ServiceCollectionImpl implements ServiceCollection {
    */
   public <S, I extends S> void addDescriptor(Class<S> serviceType, ServiceLifetime lifetime, 
       Function<ServiceFactory, I> factory) {
-    String serviceName = serviceType.getCanonicalName();
-    if(serviceAlreadyRegistered(serviceName)) {
-      logger.warn("{} already registered. Replacing with updated instance", serviceName);
+    if(serviceAlreadyRegistered(serviceType)) {
+      logger.warn("{} already registered. Replacing with updated instance", 
+          serviceType.getCanonicalName());
     }
     ServiceDescriptor sd = ServiceDescriptor.init(serviceType, lifetime, factory);
-    services.put(serviceName, sd);
+    services.put(serviceType, sd);
   }
 
   /**
@@ -64,16 +64,16 @@ public final class ServiceCollectionImpl implements ServiceCollection {
    */
   public <S, I extends S> void addDescriptor(Class<S> serviceType, ServiceLifetime lifetime, 
       Class<I> implementationType) {
-    String serviceName = serviceType.getCanonicalName();
-    if(serviceAlreadyRegistered(serviceName)) {
-      logger.warn("{} already registered. Replacing with updated instance", serviceName);
+    if(serviceAlreadyRegistered(serviceType)) {
+      logger.warn("{} already registered. Replacing with updated instance", 
+          serviceType.getCanonicalName());
     }
     ServiceDescriptor sd = ServiceDescriptor.init(serviceType, lifetime, implementationType);
-    services.put(serviceName, sd);
+    services.put(serviceType, sd);
   }
 
-  private boolean serviceAlreadyRegistered(String serviceName) {
-    return services.containsKey(serviceName);
+  private boolean serviceAlreadyRegistered(Class<?> serviceType) {
+    return services.containsKey(serviceType);
   }
 
   @Override
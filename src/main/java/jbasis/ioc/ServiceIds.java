@@ -0,0 +1,68 @@
+package jbasis.ioc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns each registered service type a dense integer identifier.
+ * <p>
+ * Identifiers are assigned once per Class, the first time the Class
+ * is registered with a container, and are shared by all containers.
+ * Looking up a type that was never registered does not assign one,
+ * so the identifiers only grow with the number of distinct registered
+ * types, however many types are probed or containers are built. A
+ * Container stores its factories in an array indexed by these
+ * identifiers so that resolving a service is a single ClassValue
+ * probe and an array read, without computing or hashing a type name.
+ */
+final class ServiceIds {
+
+  static final int NONE = -1;
+
+  private static final AtomicInteger NEXT = new AtomicInteger();
+
+  private static final ClassValue<Id> IDS = new ClassValue<Id>() {
+    @Override
+    protected Id computeValue(Class<?> type) {
+      return new Id();
+    }
+  };
+
+  private ServiceIds() {}
+
+  /**
+   * Gets the identifier of a registered service type, assigning one
+   * if it has none yet.
+   *
+   * @param type the service type
+   * @return the identifier
+   */
+  static int assign(Class<?> type) {
+    Id id = IDS.get(type);
+    int value = id.value;
+    if (value == NONE) {
+      synchronized (id) {
+        value = id.value;
+        if (value == NONE) {
+          value = NEXT.getAndIncrement();
+          id.value = value;
+        }
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Gets the identifier of a service type without assigning one.
+   *
+   * @param type the service type
+   * @return the identifier, or {@link #NONE} if the type was never
+   *     registered
+   */
+  static int find(Class<?> type) {
+    return IDS.get(type).value;
+  }
+
+  private static final class Id {
+    volatile int value = NONE;
+  }
+}
@@ -0,0 +1,222 @@
+package jbasis.ioc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import jbasis.util.JBasisException;
+
+/**
+ * The constructor dependency graph of the singletons of a container,
+ * sorted into layers.
+ * <p>
+ * The first layer holds the singletons that depend on no other
+ * singleton, and every later layer only depends on the layers before
+ * it, so the singletons of one layer can be created in parallel.
+ * Dependencies through transient and scoped services count as
+ * dependencies on the singletons those services depend on. Services
+ * registered with a factory function are treated as having no
+ * dependencies, since the services they resolve are not known.
+ */
+final class SingletonGraph {
+  private SingletonGraph() {}
+
+  /**
+   * Sorts the singletons among the registered services into layers.
+   *
+   * @param registered the registered services
+   * @return the layers, in the order in which they can be created
+   * @throws JBasisException if the singletons depend on each other
+   *     in a cycle
+   */
+  static ContainerImpl.FactoryDescriptor[][] layers(ContainerImpl.FactoryDescriptor[] registered) {
+    List<ContainerImpl.FactoryDescriptor> singletons = new ArrayList<>();
+    Map<ContainerImpl.FactoryDescriptor, Integer> index = new IdentityHashMap<>();
+    for (ContainerImpl.FactoryDescriptor sf : registered) {
+      if (sf.lifetime == ServiceLifetime.SINGLETON) {
+        index.put(sf, singletons.size());
+        singletons.add(sf);
+      }
+    }
+
+    int size = singletons.size();
+    int[] pending = new int[size];
+    List<List<Integer>> dependents = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      dependents.add(new ArrayList<>());
+    }
+    for (int i = 0; i < size; i++) {
+      Set<ContainerImpl.FactoryDescriptor> dependencies = new LinkedHashSet<>();
+      collect(singletons.get(i).plan, dependencies, new IdentityHashMap<>());
+      for (ContainerImpl.FactoryDescriptor dependency : dependencies) {
+        dependents.get(index.get(dependency)).add(i);
+        pending[i]++;
+      }
+    }
+
+    List<ContainerImpl.FactoryDescriptor[]> layers = new ArrayList<>();
+    List<Integer> ready = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      if (pending[i] == 0) {
+        ready.add(i);
+      }
+    }
+    int sorted = 0;
+    while (!ready.isEmpty()) {
+      ContainerImpl.FactoryDescriptor[] layer = new ContainerImpl.FactoryDescriptor[ready.size()];
+      List<Integer> next = new ArrayList<>();
+      for (int j = 0; j < layer.length; j++) {
+        int i = ready.get(j);
+        layer[j] = singletons.get(i);
+        for (int dependent : dependents.get(i)) {
+          if (--pending[dependent] == 0) {
+            next.add(dependent);
+          }
+        }
+      }
+      layers.add(layer);
+      sorted += layer.length;
+      ready = next;
+    }
+
+    if (sorted < size) {
+      StringJoiner cycle = new StringJoiner(", ");
+      for (int i = 0; i < size; i++) {
+        if (pending[i] > 0) {
+          cycle.add(singletons.get(i).serviceType.getName());
+        }
+      }
+      throw new JBasisException("Circular dependency between singletons " + cycle);
+    }
+    return layers.toArray(new ContainerImpl.FactoryDescriptor[0][]);
+  }
+
+  /**
+   * Sorts created singletons into the layers in which they can be
+   * closed, so that no singleton is closed before the singletons that
+   * depend on it.
+   * <p>
+   * A singleton created by a factory function may have resolved any
+   * singleton created before it, so it is closed before all of them.
+   *
+   * @param created the created singletons, in the order their creation
+   *     completed
+   * @return the layers, in the order in which they can be closed
+   */
+  static ContainerImpl.FactoryDescriptor[][] closeLayers(
+      List<ContainerImpl.FactoryDescriptor> created) {
+    int size = created.size();
+    Map<ContainerImpl.FactoryDescriptor, Integer> index = new IdentityHashMap<>();
+    for (int i = 0; i < size; i++) {
+      index.put(created.get(i), i);
+    }
+    List<List<Integer>> dependents = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      dependents.add(new ArrayList<>());
+    }
+    for (int i = 0; i < size; i++) {
+      Set<ContainerImpl.FactoryDescriptor> dependencies = new LinkedHashSet<>();
+      collect(created.get(i).plan, dependencies, new IdentityHashMap<>());
+      for (ContainerImpl.FactoryDescriptor dependency : dependencies) {
+        Integer j = index.get(dependency);
+        if (j != null) {
+          dependents.get(j).add(i);
+        }
+      }
+    }
+
+    // dependents complete their creation after their dependencies, so
+    // walking backwards sees every dependent before its dependencies
+    int[] layer = new int[size];
+    int layers = 0;
+    int factoryLayer = -1;
+    for (int i = size - 1; i >= 0; i--) {
+      int value = factoryLayer + 1;
+      for (int dependent : dependents.get(i)) {
+        value = Math.max(value, layer[dependent] + 1);
+      }
+      layer[i] = value;
+      layers = Math.max(layers, value + 1);
+      ContainerImpl.FactoryDescriptor sf = created.get(i);
+      if (sf.plan != null && sf.plan.hasFactory()) {
+        factoryLayer = Math.max(factoryLayer, value);
+      }
+    }
+
+    List<List<ContainerImpl.FactoryDescriptor>> sorted = new ArrayList<>(layers);
+    for (int l = 0; l < layers; l++) {
+      sorted.add(new ArrayList<>());
+    }
+    for (int i = size - 1; i >= 0; i--) {
+      sorted.get(layer[i]).add(created.get(i));
+    }
+    ContainerImpl.FactoryDescriptor[][] result = new ContainerImpl.FactoryDescriptor[layers][];
+    for (int l = 0; l < layers; l++) {
+      result[l] = sorted.get(l).toArray(new ContainerImpl.FactoryDescriptor[0]);
+    }
+    return result;
+  }
+
+  /**
+   * Collects the created singletons a singleton may use, directly or
+   * through other singletons. A singleton created by a factory function
+   * may use any singleton created before it.
+   *
+   * @param singleton the singleton
+   * @param created the created singletons
+   * @return the singletons it may use
+   */
+  static Set<ContainerImpl.FactoryDescriptor> dependencies(
+      ContainerImpl.FactoryDescriptor singleton, List<ContainerImpl.FactoryDescriptor> created) {
+    Set<ContainerImpl.FactoryDescriptor> result =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    Deque<ContainerImpl.FactoryDescriptor> pending = new ArrayDeque<>();
+    pending.push(singleton);
+    while (!pending.isEmpty()) {
+      ContainerImpl.FactoryDescriptor sf = pending.pop();
+      Set<ContainerImpl.FactoryDescriptor> direct = new LinkedHashSet<>();
+      collect(sf.plan, direct, new IdentityHashMap<>());
+      if (sf.plan != null && sf.plan.hasFactory()) {
+        for (ContainerImpl.FactoryDescriptor other : created) {
+          if (other.creationOrder < sf.creationOrder) {
+            direct.add(other);
+          }
+        }
+      }
+      for (ContainerImpl.FactoryDescriptor dependency : direct) {
+        if (result.add(dependency)) {
+          pending.push(dependency);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Collects the singletons a plan depends on, looking through the
+   * transient and scoped services it depends on.
+   */
+  private static void collect(ResolutionPlan plan, Set<ContainerImpl.FactoryDescriptor> singletons,
+      Map<ResolutionPlan, Boolean> visited) {
+    if (plan == null || visited.put(plan, Boolean.TRUE) != null) {
+      return;
+    }
+    for (ContainerImpl.FactoryDescriptor dependency : plan.getDependencies()) {
+      if (dependency == null) {
+        continue;
+      }
+      if (dependency.lifetime == ServiceLifetime.SINGLETON) {
+        singletons.add(dependency);
+      } else {
+        collect(dependency.plan, singletons, visited);
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package jbasis.ioc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import jbasis.logging.Logger;
+
+/**
+ * Records which singletons a run of a container used, in the order
+ * they were first resolved and with how long each took to create, and
+ * persists them to a file read by the next run.
+ * <p>
+ * The file holds one singleton per line: the name of its service type
+ * and the microseconds its creation took, separated by a tab. Lines
+ * starting with # are comments.
+ */
+final class WarmUpProfile {
+  private final Path file;
+  private final Logger logger;
+  private final Queue<ContainerImpl.FactoryDescriptor> used = new ConcurrentLinkedQueue<>();
+
+  WarmUpProfile(Path file, Logger logger) {
+    this.file = file;
+    this.logger = logger;
+  }
+
+  Path getFile() {
+    return file;
+  }
+
+  /**
+   * Records the first resolve of a singleton, unless it is being
+   * created by a warm-up thread rather than used.
+   *
+   * @param sf the singleton
+   */
+  void used(ContainerImpl.FactoryDescriptor sf) {
+    if (!(Thread.currentThread() instanceof WarmUpThread)) {
+      sf.track = false;
+      used.add(sf);
+    }
+  }
+
+  /**
+   * Reads the names of the service types of the singletons used by the
+   * previous run, in the order they were first resolved.
+   *
+   * @return the names, or an empty list if there is no readable profile
+   */
+  List<String> read() {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return Collections.emptyList();
+    } catch (IOException e) {
+      logger.warn("Unable to read warm-up profile {}. {}", file, e.getMessage(), e);
+      return Collections.emptyList();
+    }
+    List<String> names = new ArrayList<>(lines.size());
+    for (String line : lines) {
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int tab = line.indexOf('\t');
+      names.add(tab < 0 ? line : line.substring(0, tab));
+    }
+    return names;
+  }
+
+  /**
+   * Writes the singletons used by this run to the profile, replacing
+   * the previous one.
+   */
+  void write() {
+    Set<ContainerImpl.FactoryDescriptor> singletons = new LinkedHashSet<>(used);
+    StringBuilder profile = new StringBuilder("# service type\tcreation microseconds\n");
+    for (ContainerImpl.FactoryDescriptor sf : singletons) {
+      profile.append(sf.serviceType.getName()).append('\t')
+          .append(sf.creationNanos / 1000).append('\n');
+    }
+    try {
+      Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+      Files.write(temp, profile.toString().getBytes(StandardCharsets.UTF_8));
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      logger.info("Wrote warm-up profile {} with {} singletons", file, singletons.size());
+    } catch (IOException e) {
+      logger.warn("Unable to write warm-up profile {}. {}", file, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Creates a pool whose threads create singletons without counting
+   * as uses of them.
+   *
+   * @param parallelism the number of threads
+   * @return the pool
+   */
+  static ForkJoinPool newWarmUpPool(int parallelism) {
+    return new ForkJoinPool(parallelism, WarmUpThread::new, null, false);
+  }
+
+  private static final class WarmUpThread extends ForkJoinWorkerThread {
+    WarmUpThread(ForkJoinPool pool) {
+      super(pool);
+      setName("jbasis-warm-up-" + getPoolIndex());
+      setDaemon(true);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package jbasis.logging;
+
+/**
+ * Logger that hands enabled messages to the ring buffer of an
+ * {@link AsyncLoggerFactory} instead of writing them.
+ */
+final class AsyncLogger implements Logger {
+  private final Logger delegate;
+  private final AsyncLoggerFactory factory;
+
+  AsyncLogger(Logger delegate, AsyncLoggerFactory factory) {
+    this.delegate = delegate;
+    this.factory = factory;
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return delegate.isDebugEnabled();
+  }
+
+  @Override
+  public boolean isEnabled(Level level) {
+    return delegate.isEnabled(level);
+  }
+
+  @Override
+  public void log(Level level, String format, Object... args) {
+    if (delegate.isEnabled(level)) {
+      factory.enqueue(delegate, level, format, LogRingBuffer.VARARGS, null, null, null, args);
+    }
+  }
+
+  @Override
+  public void log(Level level, String message) {
+    if (delegate.isEnabled(level)) {
+      factory.enqueue(delegate, level, message, 0, null, null, null, null);
+    }
+  }
+
+  @Override
+  public void log(Level level, String format, Object arg) {
+    if (delegate.isEnabled(level)) {
+      factory.enqueue(delegate, level, format, 1, arg, null, null, null);
+    }
+  }
+
+  @Override
+  public void log(Level level, String format, Object arg1, Object arg2) {
+    if (delegate.isEnabled(level)) {
+      factory.enqueue(delegate, level, format, 2, arg1, arg2, null, null);
+    }
+  }
+
+  @Override
+  public void log(Level level, String format, Object arg1, Object arg2, Object arg3) {
+    if (delegate.isEnabled(level)) {
+      factory.enqueue(delegate, level, format, 3, arg1, arg2, arg3, null);
+    }
+  }
+}
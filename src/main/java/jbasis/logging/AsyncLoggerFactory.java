@@ -0,0 +1,187 @@
+package jbasis.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import jbasis.util.JBasisException;
+
+/**
+ * A logger factory whose loggers write asynchronously.
+ * <p>
+ * Loggers created by this factory check the level on the calling
+ * thread and, if it is enabled, put the message and its arguments
+ * into a bounded ring buffer. A background thread takes messages from
+ * the buffer and writes them to loggers created by the delegate
+ * factory, so arguments are formatted on the background thread and
+ * must be safe to read after the call returns.
+ * <p>
+ * When the buffer is full the {@link OverflowPolicy} decides whether
+ * the caller waits or the message is dropped. Dropped messages are
+ * counted per level.
+ * <pre>
+ * AsyncLoggerFactory factory = new AsyncLoggerFactory(cls -&gt; new Log4JLogger(cls));
+ * LoggerFactory.registerFactory(factory);
+ * ...
+ * factory.close();
+ * </pre>
+ */
+public final class AsyncLoggerFactory implements Function<Class<?>, Logger>, AutoCloseable {
+
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private static final int IDLE_SPINS = 100;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final Function<Class<?>, Logger> delegateFactory;
+  private final OverflowPolicy overflowPolicy;
+  private final LogRingBuffer buffer;
+  private final LongAdder[] dropped = new LongAdder[Level.values().length];
+  private final LongAdder producers = new LongAdder();
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  /**
+   * Creates a factory with the default capacity that waits when
+   * the buffer is full.
+   *
+   * @param delegateFactory creates the loggers that write the messages
+   */
+  public AsyncLoggerFactory(Function<Class<?>, Logger> delegateFactory) {
+    this(delegateFactory, DEFAULT_CAPACITY, OverflowPolicy.WAIT);
+  }
+
+  /**
+   * Creates a factory.
+   *
+   * @param delegateFactory creates the loggers that write the messages
+   * @param capacity the number of buffered messages, rounded up to a
+   *     power of two
+   * @param overflowPolicy what to do when the buffer is full
+   */
+  public AsyncLoggerFactory(Function<Class<?>, Logger> delegateFactory, int capacity,
+      OverflowPolicy overflowPolicy) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new JBasisException("Capacity must be between 1 and 2^30 but was " + capacity);
+    }
+    this.delegateFactory = delegateFactory;
+    this.overflowPolicy = overflowPolicy;
+    this.buffer = new LogRingBuffer(capacity);
+    for (int i = 0; i < dropped.length; i++) {
+      dropped[i] = new LongAdder();
+    }
+    this.writer = new Thread(this::write, "jbasis-async-logger");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  @Override
+  public Logger apply(Class<?> cls) {
+    return new AsyncLogger(delegateFactory.apply(cls), this);
+  }
+
+  public int getCapacity() {
+    return buffer.capacity();
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * @return the number of messages dropped because the buffer was full
+   */
+  public long getDroppedCount() {
+    long count = 0;
+    for (LongAdder adder : dropped) {
+      count += adder.sum();
+    }
+    return count;
+  }
+
+  /**
+   * @param level the logging level
+   * @return the number of messages of the level dropped because the
+   *     buffer was full
+   */
+  public long getDroppedCount(Level level) {
+    return dropped[level.ordinal()].sum();
+  }
+
+  /**
+   * Stops the background thread after it has written out all
+   * buffered messages, including those of callers that were putting a
+   * message into the buffer while it was closed. Messages logged
+   * afterwards are written on the calling thread.
+   */
+  @Override
+  public void close() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  void enqueue(Logger delegate, Level level, String format, int arity,
+      Object arg1, Object arg2, Object arg3, Object[] args) {
+    // the writer drains until no caller is left between the check of
+    // running and publishing its message
+    producers.increment();
+    try {
+      while (running) {
+        if (buffer.offer(delegate, level, format, arity, arg1, arg2, arg3, args)) {
+          return;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP) {
+          dropped[level.ordinal()].increment();
+          return;
+        }
+        LockSupport.parkNanos(FULL_PARK_NANOS);
+      }
+    } finally {
+      producers.decrement();
+    }
+    LogRingBuffer.write(delegate, level, format, arity, arg1, arg2, arg3, args);
+  }
+
+  private void write() {
+    int idle = 0;
+    while (running) {
+      if (poll()) {
+        idle = 0;
+      } else if (++idle < IDLE_SPINS) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+    // callers that saw running may still be claiming or publishing a
+    // slot; a caller that starts afterwards sees it cleared and writes
+    // on its own thread
+    while (producers.sum() > 0) {
+      if (!poll()) {
+        Thread.yield();
+      }
+    }
+    while (poll()) {
+      // write out what was buffered before closing
+    }
+  }
+
+  private boolean poll() {
+    try {
+      return buffer.poll();
+    } catch (RuntimeException e) {
+      // a failing delegate must not stop the background thread
+      return true;
+    }
+  }
+}
@@ -8,6 +8,14 @@ import org.apache.logging.log4j.LogManager;
  * Logger facade implementation for log4j
  */
 public class Log4JLogger implements jbasis.logging.Logger {
+  private static final Level[] LEVELS = new Level[jbasis.logging.Level.values().length];
+
+  static {
+    for (jbasis.logging.Level level : jbasis.logging.Level.values()) {
+      LEVELS[level.ordinal()] = Level.getLevel(level.name());
+    }
+  }
+
   private Logger logger;
 
   public Log4JLogger(Class<?> cls) {
@@ -19,9 +27,38 @@ public class Log4JLogger implements jbasis.logging.Logger {
     return this.logger.isDebugEnabled();
   }
 
+  @Override
+  public boolean isEnabled(jbasis.logging.Level level) {
+    return this.logger.isEnabled(LEVELS[level.ordinal()]);
+  }
+
   @Override
   public void log(jbasis.logging.Level level, String format, Object... args) {
-    Level log4jlevel = Level.getLevel(level.name());
-    this.logger.log(log4jlevel, format, args);
+    this.logger.log(LEVELS[level.ordinal()], format, args);
+  }
+
+  @Override
+  public void log(jbasis.logging.Level level, String message) {
+    this.logger.log(LEVELS[level.ordinal()], message);
+  }
+
+  @Override
+  public void log(jbasis.logging.Level level, String format, Object arg) {
+    if (arg instanceof Object[]) {
+      this.logger.log(LEVELS[level.ordinal()], format, (Object[]) arg);
+    } else {
+      this.logger.log(LEVELS[level.ordinal()], format, arg);
+    }
+  }
+
+  @Override
+  public void log(jbasis.logging.Level level, String format, Object arg1, Object arg2) {
+    this.logger.log(LEVELS[level.ordinal()], format, arg1, arg2);
+  }
+
+  @Override
+  public void log(jbasis.logging.Level level, String format, Object arg1, Object arg2,
+      Object arg3) {
+    this.logger.log(LEVELS[level.ordinal()], format, arg1, arg2, arg3);
   }
 }
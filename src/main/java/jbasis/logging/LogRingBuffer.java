@@ -0,0 +1,151 @@
+package jbasis.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free ring buffer of log events for many producers
+ * and a single consumer.
+ * <p>
+ * Events are allocated once when the buffer is created and reused.
+ * Each slot carries a sequence number: a producer claims a slot by
+ * advancing the tail with a compare-and-set, fills the event and
+ * publishes it by moving the slot sequence forward. The consumer
+ * only reads a slot once its sequence says it was published and hands
+ * it back to the producers by moving the sequence a full lap ahead.
+ */
+final class LogRingBuffer {
+
+  static final int VARARGS = -1;
+
+  private final Event[] events;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private long head;
+
+  LogRingBuffer(int capacity) {
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    events = new Event[size];
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      events[i] = new Event();
+      sequences.set(i, i);
+    }
+    mask = size - 1;
+  }
+
+  int capacity() {
+    return events.length;
+  }
+
+  /**
+   * Publishes an event.
+   *
+   * @return false if the buffer is full
+   */
+  boolean offer(Logger logger, Level level, String format, int arity,
+      Object arg1, Object arg2, Object arg3, Object[] args) {
+    long position = tail.get();
+    while (true) {
+      int slot = (int) position & mask;
+      long difference = sequences.get(slot) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          Event event = events[slot];
+          event.logger = logger;
+          event.level = level;
+          event.format = format;
+          event.arity = arity;
+          event.arg1 = arg1;
+          event.arg2 = arg2;
+          event.arg3 = arg3;
+          event.args = args;
+          sequences.lazySet(slot, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Writes out the oldest published event. Must only be called
+   * by the single consumer.
+   *
+   * @return false if there was no published event
+   */
+  boolean poll() {
+    long position = head;
+    int slot = (int) position & mask;
+    if (sequences.get(slot) != position + 1) {
+      return false;
+    }
+    Event event = events[slot];
+    try {
+      event.write();
+    } finally {
+      event.clear();
+      head = position + 1;
+      sequences.lazySet(slot, position + events.length);
+    }
+    return true;
+  }
+
+  /**
+   * Writes a message to a logger using the overload matching
+   * the number of arguments.
+   */
+  static void write(Logger logger, Level level, String format, int arity,
+      Object arg1, Object arg2, Object arg3, Object[] args) {
+    switch (arity) {
+      case 0:
+        logger.log(level, format);
+        break;
+      case 1:
+        logger.log(level, format, arg1);
+        break;
+      case 2:
+        logger.log(level, format, arg1, arg2);
+        break;
+      case 3:
+        logger.log(level, format, arg1, arg2, arg3);
+        break;
+      default:
+        logger.log(level, format, args);
+        break;
+    }
+  }
+
+  private static final class Event {
+    Logger logger;
+    Level level;
+    String format;
+    int arity;
+    Object arg1;
+    Object arg2;
+    Object arg3;
+    Object[] args;
+
+    void write() {
+      LogRingBuffer.write(logger, level, format, arity, arg1, arg2, arg3, args);
+    }
+
+    void clear() {
+      logger = null;
+      level = null;
+      format = null;
+      arg1 = null;
+      arg2 = null;
+      arg3 = null;
+      args = null;
+    }
+  }
+}
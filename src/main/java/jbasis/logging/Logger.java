@@ -1,7 +1,23 @@
 package jbasis.logging;
 
+import java.util.function.Supplier;
+
 /**
  * Logger facade
+ * <p>
+ * The fixed-arity and Supplier overloads check the level before
+ * anything else, so a message for a disabled level costs a single
+ * branch and no varargs array or message is built. Implementations
+ * only need {@link #isDebugEnabled()} and the varargs
+ * {@link #log(Level, String, Object...)}, but should override
+ * {@link #isEnabled(Level)} and the fixed-arity overloads when the
+ * underlying logging framework offers them.
+ * <p>
+ * A caller that passes its arguments as an Object[] typed as Object
+ * reaches the single-argument overload rather than the varargs one.
+ * That overload treats an Object[] as the arguments, as the varargs
+ * overload always did, and implementations overriding it must do
+ * the same.
  */
 public interface Logger {
   /**
@@ -9,28 +25,168 @@ public interface Logger {
    */
   boolean isDebugEnabled();
 
+  /**
+   * Determines whether messages of a level would be written. The
+   * default implementation only knows about debugging and considers
+   * every other level enabled.
+   *
+   * @param level the logging level
+   * @return true if messages of the level are enabled
+   */
+  default boolean isEnabled(Level level) {
+    if (level == Level.TRACE || level == Level.DEBUG) {
+      return isDebugEnabled();
+    }
+    return true;
+  }
+
   /**
    * writes out a log message for the specified Level
-   * 
+   *
    * @param level the logging level
    * @param format a log format string
    * @param args passed in to format string
    */
   void log(Level level, String format, Object... args);
 
+  default void log(Level level, String message) {
+    if (isEnabled(level)) {
+      log(level, message, new Object[0]);
+    }
+  }
+
+  default void log(Level level, String format, Object arg) {
+    if (isEnabled(level)) {
+      log(level, format, arg instanceof Object[] ? (Object[]) arg : new Object[] { arg });
+    }
+  }
+
+  default void log(Level level, String format, Object arg1, Object arg2) {
+    if (isEnabled(level)) {
+      log(level, format, new Object[] { arg1, arg2 });
+    }
+  }
+
+  default void log(Level level, String format, Object arg1, Object arg2, Object arg3) {
+    if (isEnabled(level)) {
+      log(level, format, new Object[] { arg1, arg2, arg3 });
+    }
+  }
+
+  /**
+   * writes out a log message for the specified Level, building the
+   * message only if the level is enabled
+   *
+   * @param level the logging level
+   * @param message supplies the message
+   */
+  default void log(Level level, Supplier<String> message) {
+    if (isEnabled(level)) {
+      log(level, message.get());
+    }
+  }
+
+  default void debug(String message) {
+    log(Level.DEBUG, message);
+  }
+
+  default void debug(String format, Object arg) {
+    log(Level.DEBUG, format, arg);
+  }
+
+  default void debug(String format, Object arg1, Object arg2) {
+    log(Level.DEBUG, format, arg1, arg2);
+  }
+
+  default void debug(String format, Object arg1, Object arg2, Object arg3) {
+    log(Level.DEBUG, format, arg1, arg2, arg3);
+  }
+
+  default void debug(Supplier<String> message) {
+    log(Level.DEBUG, message);
+  }
+
   default void debug(String format, Object... args) {
-    log(Level.DEBUG, format, args);
+    if (isEnabled(Level.DEBUG)) {
+      log(Level.DEBUG, format, args);
+    }
+  }
+
+  default void info(String message) {
+    log(Level.INFO, message);
   }
-  
+
+  default void info(String format, Object arg) {
+    log(Level.INFO, format, arg);
+  }
+
+  default void info(String format, Object arg1, Object arg2) {
+    log(Level.INFO, format, arg1, arg2);
+  }
+
+  default void info(String format, Object arg1, Object arg2, Object arg3) {
+    log(Level.INFO, format, arg1, arg2, arg3);
+  }
+
+  default void info(Supplier<String> message) {
+    log(Level.INFO, message);
+  }
+
   default void info(String format, Object... args) {
-    log(Level.INFO, format, args);
+    if (isEnabled(Level.INFO)) {
+      log(Level.INFO, format, args);
+    }
+  }
+
+  default void warn(String message) {
+    log(Level.WARN, message);
+  }
+
+  default void warn(String format, Object arg) {
+    log(Level.WARN, format, arg);
+  }
+
+  default void warn(String format, Object arg1, Object arg2) {
+    log(Level.WARN, format, arg1, arg2);
   }
-  
+
+  default void warn(String format, Object arg1, Object arg2, Object arg3) {
+    log(Level.WARN, format, arg1, arg2, arg3);
+  }
+
+  default void warn(Supplier<String> message) {
+    log(Level.WARN, message);
+  }
+
   default void warn(String format, Object... args) {
-    log(Level.WARN, format, args);
+    if (isEnabled(Level.WARN)) {
+      log(Level.WARN, format, args);
+    }
+  }
+
+  default void error(String message) {
+    log(Level.ERROR, message);
+  }
+
+  default void error(String format, Object arg) {
+    log(Level.ERROR, format, arg);
   }
-  
+
+  default void error(String format, Object arg1, Object arg2) {
+    log(Level.ERROR, format, arg1, arg2);
+  }
+
+  default void error(String format, Object arg1, Object arg2, Object arg3) {
+    log(Level.ERROR, format, arg1, arg2, arg3);
+  }
+
+  default void error(Supplier<String> message) {
+    log(Level.ERROR, message);
+  }
+
   default void error(String format, Object... args) {
-    log(Level.ERROR, format, args);
+    if (isEnabled(Level.ERROR)) {
+      log(Level.ERROR, format, args);
+    }
   }
 }
@@ -0,0 +1,19 @@
+package jbasis.logging;
+
+/**
+ * What an asynchronous logger does with a message when its
+ * ring buffer is full.
+ */
+public enum OverflowPolicy {
+  /**
+   * The logging thread waits until the background thread has made
+   * room for the message. No messages are lost.
+   */
+  WAIT,
+
+  /**
+   * The message is discarded and counted. The logging thread
+   * never waits.
+   */
+  DROP
+}
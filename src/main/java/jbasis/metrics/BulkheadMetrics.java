@@ -0,0 +1,27 @@
+package jbasis.metrics;
+
+/**
+ * The current state of the bulkhead of a method.
+ */
+public interface BulkheadMetrics {
+
+  /**
+   * @return the number of calls currently allowed to run at once
+   */
+  int getLimit();
+
+  /**
+   * @return the number of calls currently running
+   */
+  int getInFlight();
+
+  /**
+   * @return the number of calls currently waiting for a permit
+   */
+  int getWaiting();
+
+  /**
+   * @return the number of calls rejected since the bulkhead was created
+   */
+  long getRejectedCount();
+}
@@ -0,0 +1,36 @@
+package jbasis.metrics;
+
+/**
+ * The statistics of the cache of a method.
+ */
+public interface CacheStats {
+
+  /**
+   * @return the number of calls served from the cache
+   */
+  long getHitCount();
+
+  /**
+   * @return the number of calls that invoked the method
+   */
+  long getMissCount();
+
+  /**
+   * @return the number of entries evicted to keep the cache bounded
+   */
+  long getEvictionCount();
+
+  /**
+   * @return the approximate number of entries in the cache
+   */
+  int getSize();
+
+  /**
+   * @return the ratio of hits to calls, or 1 if there were no calls
+   */
+  default double getHitRate() {
+    long hits = getHitCount();
+    long calls = hits + getMissCount();
+    return calls == 0 ? 1.0 : (double) hits / calls;
+  }
+}
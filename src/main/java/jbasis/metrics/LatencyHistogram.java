@@ -0,0 +1,133 @@
+package jbasis.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-memory histogram of latencies in nanoseconds.
+ * <p>
+ * Values are counted in log-linear buckets: values below 128 ns have
+ * a bucket each and larger values are split into 64 buckets per power
+ * of two, so every value is counted with a relative error below 2%.
+ * Values above {@link #HIGHEST_TRACKABLE_VALUE} (about 18 minutes) are
+ * counted in the last bucket, the maximum is kept exactly.
+ * <p>
+ * Recording never locks or allocates once a thread has recorded its
+ * first value. Threads record into one of a few striped recorders
+ * chosen from the thread id, which are merged when a snapshot is taken.
+ * This is a deliberate trade-off against a recorder per thread: a
+ * recorder takes about 18 KB, and a histogram is kept for every
+ * profiled method, so recorders are shared by threads and allocated
+ * only when a thread first uses one. At most four recorders, about
+ * 72 KB, are kept per histogram, at the cost of atomic updates
+ * contended by the threads that share a stripe.
+ * Taking a snapshot with reset starts a new interval; values recorded
+ * while the snapshot is taken are counted in one interval or the next.
+ */
+public final class LatencyHistogram {
+
+  public static final long HIGHEST_TRACKABLE_VALUE = (1L << 40) - 1;
+
+  static final int SUB_BUCKET_BITS = 6;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+  static final int BUCKETS = index(HIGHEST_TRACKABLE_VALUE) + 1;
+  static final int MAX_STRIPES = 4;
+
+  private static final int STRIPES = stripes();
+
+  private final AtomicReferenceArray<Recorder> recorders = new AtomicReferenceArray<>(STRIPES);
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds, negative values count as 0
+   */
+  public void record(long nanos) {
+    long value = nanos < 0 ? 0 : nanos;
+    int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+    Recorder recorder = recorders.get(stripe);
+    if (recorder == null) {
+      recorder = new Recorder();
+      if (!recorders.compareAndSet(stripe, null, recorder)) {
+        recorder = recorders.get(stripe);
+      }
+    }
+    recorder.record(value);
+  }
+
+  /**
+   * @return the values recorded since the histogram was created or last reset
+   */
+  public LatencySnapshot snapshot() {
+    return merge(false);
+  }
+
+  /**
+   * Takes a snapshot and starts a new interval.
+   *
+   * @return the values recorded since the histogram was created or last reset
+   */
+  public LatencySnapshot snapshotAndReset() {
+    return merge(true);
+  }
+
+  private LatencySnapshot merge(boolean reset) {
+    long[] counts = new long[BUCKETS];
+    long sum = 0;
+    long max = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      Recorder recorder = recorders.get(i);
+      if (recorder == null) {
+        continue;
+      }
+      for (int b = 0; b < BUCKETS; b++) {
+        counts[b] += reset ? recorder.counts.getAndSet(b, 0) : recorder.counts.get(b);
+      }
+      sum += reset ? recorder.sum.getAndSet(0) : recorder.sum.get();
+      max = Math.max(max, reset ? recorder.max.getAndSet(0) : recorder.max.get());
+    }
+    return new LatencySnapshot(counts, sum, max);
+  }
+
+  static int index(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    long clamped = Math.min(value, HIGHEST_TRACKABLE_VALUE);
+    int shift = 63 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS;
+    int subBucket = (int) (clamped >>> shift) - SUB_BUCKETS;
+    return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long highestEquivalentValue(int index) {
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+    int offset = index - LINEAR_LIMIT;
+    int shift = offset / SUB_BUCKETS + 1;
+    long lowest = (long) (SUB_BUCKETS + offset % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  private static int stripes() {
+    int processors = Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+    return Integer.highestOneBit(Math.max(processors, 1));
+  }
+
+  private static final class Recorder {
+    final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    final AtomicLong sum = new AtomicLong();
+    final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+      counts.getAndIncrement(index(value));
+      sum.getAndAdd(value);
+      long current = max.get();
+      while (value > current && !max.compareAndSet(current, value)) {
+        current = max.get();
+      }
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package jbasis.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The bulkheads of methods, keyed by the implementation method of
+ * a service. A bulkhead is registered on the first call to its method.
+ */
+public final class MethodBulkheads {
+  private MethodBulkheads() {}
+
+  private static final Map<Method, BulkheadMetrics> BULKHEADS = new ConcurrentHashMap<>();
+
+  /**
+   * Registers the bulkhead of a method unless one is registered.
+   *
+   * @param method the implementation method
+   * @param metrics the bulkhead
+   */
+  public static void register(Method method, BulkheadMetrics metrics) {
+    BULKHEADS.putIfAbsent(method, metrics);
+  }
+
+  /**
+   * Gets the bulkhead of a method.
+   *
+   * @param method the implementation method
+   * @return the bulkhead, or null if the method has not been called
+   */
+  public static BulkheadMetrics find(Method method) {
+    return BULKHEADS.get(method);
+  }
+
+  /**
+   * @return a read-only view of all bulkheads
+   */
+  public static Map<Method, BulkheadMetrics> all() {
+    return Collections.unmodifiableMap(BULKHEADS);
+  }
+}
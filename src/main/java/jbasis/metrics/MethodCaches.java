@@ -0,0 +1,43 @@
+package jbasis.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The caches of methods, keyed by the implementation method of
+ * a service. A cache is registered on the first call to its method.
+ */
+public final class MethodCaches {
+  private MethodCaches() {}
+
+  private static final Map<Method, CacheStats> CACHES = new ConcurrentHashMap<>();
+
+  /**
+   * Registers the cache of a method unless one is registered.
+   *
+   * @param method the implementation method
+   * @param stats the cache
+   */
+  public static void register(Method method, CacheStats stats) {
+    CACHES.putIfAbsent(method, stats);
+  }
+
+  /**
+   * Gets the cache of a method.
+   *
+   * @param method the implementation method
+   * @return the cache, or null if the method has not been called
+   */
+  public static CacheStats find(Method method) {
+    return CACHES.get(method);
+  }
+
+  /**
+   * @return a read-only view of all caches
+   */
+  public static Map<Method, CacheStats> all() {
+    return Collections.unmodifiableMap(CACHES);
+  }
+}
@@ -0,0 +1,52 @@
+package jbasis.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latency histograms of profiled methods, keyed by the
+ * implementation method of a service.
+ * <p>
+ * An implementation class registered as more than one service type
+ * has one histogram per method, which merges the calls made through
+ * all of those service types, as well as the calls of every instance
+ * and container.
+ */
+public final class MethodLatencies {
+  private MethodLatencies() {}
+
+  private static final Map<Method, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the histogram of a method, creating it on first use.
+   *
+   * @param method the implementation method
+   * @return the histogram of the method
+   */
+  public static LatencyHistogram get(Method method) {
+    LatencyHistogram histogram = HISTOGRAMS.get(method);
+    if (histogram == null) {
+      histogram = HISTOGRAMS.computeIfAbsent(method, m -> new LatencyHistogram());
+    }
+    return histogram;
+  }
+
+  /**
+   * Gets the histogram of a method if one has been recorded.
+   *
+   * @param method the implementation method
+   * @return the histogram, or null if the method was not profiled
+   */
+  public static LatencyHistogram find(Method method) {
+    return HISTOGRAMS.get(method);
+  }
+
+  /**
+   * @return a read-only view of all histograms
+   */
+  public static Map<Method, LatencyHistogram> all() {
+    return Collections.unmodifiableMap(HISTOGRAMS);
+  }
+}
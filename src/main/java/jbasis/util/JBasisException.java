@@ -20,4 +20,18 @@ public class JBasisException extends RuntimeException {
   public JBasisException(String message, Throwable cause) {
     super(message, cause);
   }
+
+  /**
+   * Allows subclasses that are thrown on hot paths to skip
+   * capturing a stack trace.
+   *
+   * @param message the detail message
+   * @param cause the cause, or null
+   * @param enableSuppression whether suppressed exceptions are recorded
+   * @param writableStackTrace whether the stack trace is captured
+   */
+  protected JBasisException(String message, Throwable cause, boolean enableSuppression,
+      boolean writableStackTrace) {
+    super(message, cause, enableSuppression, writableStackTrace);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.Async;
+import jbasis.interception.EmptyInterceptor;
+import jbasis.interception.InvocationContext;
+import jbasis.interception.Stateless;
+import jbasis.interception.WithInterceptor;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.util.JBasisException;
+
+public class AsyncDispatchTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void async_methods_return_before_they_run() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(DispatchedServiceRegistry.class));
+    DispatchedService svc = container.resolve(DispatchedService.class);
+    CountDownLatch release = new CountDownLatch(1);
+    Traced.events.clear();
+
+    CompletableFuture<String> future = svc.threadName(release);
+
+    assertFalse(future.isDone());
+    assertEquals(List.of("before"), Traced.events);
+    release.countDown();
+    String thread = future.get(5, TimeUnit.SECONDS);
+    assertNotEquals(Thread.currentThread().getName(), thread);
+    assertEquals(List.of("before", "after " + thread), Traced.events);
+
+    container.close();
+  }
+
+  @Test public void failures_and_returned_stages_complete_the_future() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(DispatchedServiceRegistry.class));
+    DispatchedService svc = container.resolve(DispatchedService.class);
+
+    assertEquals("staged", svc.staged().toCompletableFuture().get(5, TimeUnit.SECONDS));
+    CompletableFuture<String> failed = svc.fail();
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> failed.get(5, TimeUnit.SECONDS));
+    assertEquals("async failure", e.getCause().getMessage());
+
+    container.close();
+  }
+
+  @Test public void executor_is_configured_on_the_container_and_shut_down_on_close()
+      throws Exception {
+    Container container = new ContainerImpl(cfg -> {
+      cfg.apply(DispatchedServiceRegistry.class);
+      cfg.useAsyncExecutor(() -> Executors.newSingleThreadExecutor(
+          task -> new Thread(task, "dispatch-test")));
+    });
+    DispatchedService svc = container.resolve(DispatchedService.class);
+    CountDownLatch release = new CountDownLatch(0);
+
+    assertEquals("dispatch-test", svc.threadName(release).get(5, TimeUnit.SECONDS));
+    container.close();
+
+    CompletableFuture<String> rejected = svc.threadName(release);
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> rejected.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof RejectedExecutionException);
+  }
+
+  @Test public void bounded_executor_runs_calls_on_the_caller_when_full() throws Exception {
+    Container container = new ContainerImpl(cfg -> {
+      cfg.apply(DispatchedServiceRegistry.class);
+      cfg.useBoundedAsyncExecutor(1, 1);
+    });
+    DispatchedService svc = container.resolve(DispatchedService.class);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<String> running = svc.threadName(release);
+    CompletableFuture<String> queued = svc.threadName(release);
+    CompletableFuture<String> overflow = svc.threadName(new CountDownLatch(0));
+
+    assertEquals(Thread.currentThread().getName(), overflow.get(5, TimeUnit.SECONDS));
+    release.countDown();
+    assertTrue(running.get(5, TimeUnit.SECONDS).startsWith("jbasis-async-"));
+    assertTrue(queued.get(5, TimeUnit.SECONDS).startsWith("jbasis-async-"));
+
+    container.close();
+  }
+
+  @Test public void unbounded_executor_starts_a_thread_per_busy_call() throws Exception {
+    Container container = new ContainerImpl(cfg -> {
+      cfg.apply(DispatchedServiceRegistry.class);
+      cfg.useUnboundedAsyncExecutor();
+    });
+    DispatchedService svc = container.resolve(DispatchedService.class);
+    CountDownLatch release = new CountDownLatch(1);
+
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      calls.add(svc.threadName(release));
+    }
+    release.countDown();
+    Set<String> threads = new HashSet<>();
+    for (CompletableFuture<String> call : calls) {
+      String thread = call.get(5, TimeUnit.SECONDS);
+      assertTrue(thread.startsWith("jbasis-async-"), thread);
+      threads.add(thread);
+    }
+    assertEquals(3, threads.size());
+
+    container.close();
+  }
+
+  @Test public void default_executor_is_bounded_without_virtual_threads() {
+    ExecutorService executor = AsyncExecutor.createDefault();
+    try {
+      if (executor instanceof ThreadPoolExecutor) {
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        assertEquals(AsyncExecutor.DEFAULT_THREADS, pool.getMaximumPoolSize());
+        assertEquals(AsyncExecutor.DEFAULT_QUEUE_CAPACITY, pool.getQueue().remainingCapacity());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void async_requires_a_future_return_type() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(DispatchedServiceRegistry.class));
+    DispatchedService svc = container.resolve(DispatchedService.class);
+
+    assertThrows(JBasisException.class, () -> svc.blocking());
+
+    container.close();
+  }
+}
+
+class DispatchedServiceRegistry extends Registry {
+  public DispatchedServiceRegistry() {
+    register(cfg -> cfg.addTransient(DispatchedService.class, DispatchedServiceImpl.class));
+  }
+}
+
+interface DispatchedService {
+  CompletableFuture<String> threadName(CountDownLatch release);
+
+  CompletionStage<String> staged();
+
+  CompletableFuture<String> fail();
+
+  String blocking();
+}
+
+class DispatchedServiceImpl implements DispatchedService {
+
+  @Override
+  @Async
+  @Traced
+  public CompletableFuture<String> threadName(CountDownLatch release) {
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return CompletableFuture.completedFuture(Thread.currentThread().getName());
+  }
+
+  @Override
+  @Async
+  public CompletionStage<String> staged() {
+    return CompletableFuture.supplyAsync(() -> "staged");
+  }
+
+  @Override
+  @Async
+  public CompletableFuture<String> fail() {
+    throw new IllegalStateException("async failure");
+  }
+
+  @Override
+  @Async
+  public String blocking() {
+    return "blocking";
+  }
+}
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = TracedInterceptor.class)
+@interface Traced {
+  List<String> events = new CopyOnWriteArrayList<>();
+}
+
+@Stateless
+class TracedInterceptor extends EmptyInterceptor {
+  public TracedInterceptor(Traced traced) {
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    Traced.events.add("before");
+    return true;
+  }
+
+  @Override
+  public void afterInvoke(InvocationContext context) {
+    Traced.events.add("after " + context.getResult());
+  }
+}
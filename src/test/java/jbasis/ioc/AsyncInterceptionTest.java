@@ -0,0 +1,152 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.EmptyInterceptor;
+import jbasis.interception.InvocationContext;
+import jbasis.interception.Profile;
+import jbasis.interception.Stateless;
+import jbasis.interception.WithInterceptor;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.metrics.MethodLatencies;
+
+public class AsyncInterceptionTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void after_invoke_runs_when_the_stage_completes() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncServiceRegistry.class));
+    AsyncService svc = container.resolve(AsyncService.class);
+    CompletableFuture<String> pending = new CompletableFuture<>();
+    AsyncServiceImpl.pending = pending;
+    Recording.events.clear();
+
+    CompletionStage<String> stage = svc.later();
+
+    assertEquals(List.of("before"), Recording.events);
+    pending.complete("done");
+    assertEquals("done", stage.toCompletableFuture().get(5, TimeUnit.SECONDS));
+    assertEquals(List.of("before", "after done"), Recording.events);
+
+    container.close();
+  }
+
+  @Test public void on_error_sees_asynchronous_failures() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncServiceRegistry.class));
+    AsyncService svc = container.resolve(AsyncService.class);
+    Recording.events.clear();
+
+    CompletableFuture<String> future = svc.failLater();
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> future.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof IllegalStateException);
+    assertEquals(List.of("before", "error async failure"), Recording.events);
+
+    container.close();
+  }
+
+  @Test public void profile_measures_until_completion() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncServiceRegistry.class));
+    AsyncService svc = container.resolve(AsyncService.class);
+    Method slow = AsyncServiceImpl.class.getMethod("slow");
+
+    CompletableFuture<String> future = svc.slow();
+    assertFalse(future.isDone());
+    future.get(5, TimeUnit.SECONDS);
+
+    assertTrue(MethodLatencies.find(slow).snapshot().getMax() >= TimeUnit.MILLISECONDS.toNanos(50));
+
+    container.close();
+  }
+}
+
+class AsyncServiceRegistry extends Registry {
+  public AsyncServiceRegistry() {
+    register(cfg -> cfg.addTransient(AsyncService.class, AsyncServiceImpl.class));
+  }
+}
+
+interface AsyncService {
+  CompletionStage<String> later();
+
+  CompletableFuture<String> failLater();
+
+  CompletableFuture<String> slow();
+}
+
+class AsyncServiceImpl implements AsyncService {
+  static CompletableFuture<String> pending;
+
+  @Override
+  @Recording
+  public CompletionStage<String> later() {
+    return pending;
+  }
+
+  @Override
+  @Recording
+  public CompletableFuture<String> failLater() {
+    return CompletableFuture.supplyAsync(() -> {
+      throw new IllegalStateException("async failure");
+    });
+  }
+
+  @Override
+  @Profile
+  public CompletableFuture<String> slow() {
+    return CompletableFuture.supplyAsync(() -> "slow",
+        CompletableFuture.delayedExecutor(60, TimeUnit.MILLISECONDS));
+  }
+}
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = RecordingInterceptor.class)
+@interface Recording {
+  List<String> events = new CopyOnWriteArrayList<>();
+}
+
+@Stateless
+class RecordingInterceptor extends EmptyInterceptor {
+  public RecordingInterceptor(Recording recording) {
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    Recording.events.add("before");
+    return true;
+  }
+
+  @Override
+  public void afterInvoke(InvocationContext context) {
+    Recording.events.add("after " + context.getResult());
+  }
+
+  @Override
+  public boolean onError(InvocationContext context, Throwable t) {
+    Recording.events.add("error " + t.getMessage());
+    return false;
+  }
+}
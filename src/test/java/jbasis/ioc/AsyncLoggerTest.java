@@ -0,0 +1,119 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jbasis.logging.AsyncLoggerFactory;
+import jbasis.logging.Level;
+import jbasis.logging.Logger;
+import jbasis.logging.OverflowPolicy;
+
+public class AsyncLoggerTest {
+
+  @Test public void messages_are_written_in_order_on_close() throws Exception {
+    RecordingLogger delegate = new RecordingLogger(true);
+    AsyncLoggerFactory factory = new AsyncLoggerFactory(cls -> delegate, 4, OverflowPolicy.WAIT);
+    Logger logger = factory.apply(getClass());
+
+    Thread[] producers = new Thread[4];
+    for (int t = 0; t < producers.length; t++) {
+      producers[t] = new Thread(() -> {
+        for (int i = 0; i < 250; i++) {
+          logger.info("message {}", i);
+        }
+      });
+      producers[t].start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    logger.debug("last {} {} {} {}", 1, 2, 3, 4);
+    factory.close();
+
+    assertEquals(1001, delegate.messages.size());
+    assertEquals("DEBUG last {} {} {} {} 4", delegate.messages.get(1000));
+    assertEquals(0, factory.getDroppedCount());
+  }
+
+  @Test public void messages_logged_while_closing_are_not_lost() throws Exception {
+    AtomicInteger written = new AtomicInteger();
+    RecordingLogger delegate = new RecordingLogger(true) {
+      @Override
+      public void log(Level level, String format, Object... args) {
+        written.incrementAndGet();
+      }
+    };
+    AsyncLoggerFactory factory = new AsyncLoggerFactory(cls -> delegate, 16, OverflowPolicy.WAIT);
+    Logger logger = factory.apply(getClass());
+
+    CountDownLatch started = new CountDownLatch(4);
+    Thread[] producers = new Thread[4];
+    for (int t = 0; t < producers.length; t++) {
+      producers[t] = new Thread(() -> {
+        started.countDown();
+        for (int i = 0; i < 20000; i++) {
+          logger.info("message {}", i);
+        }
+      });
+      producers[t].start();
+    }
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    factory.close();
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    assertEquals(80000, written.get());
+  }
+
+  @Test public void disabled_levels_are_not_buffered() {
+    RecordingLogger delegate = new RecordingLogger(false);
+    AsyncLoggerFactory factory = new AsyncLoggerFactory(cls -> delegate);
+    Logger logger = factory.apply(getClass());
+
+    logger.debug("hidden {}", 1);
+    logger.warn("shown");
+    factory.close();
+
+    assertEquals(1, delegate.messages.size());
+    assertEquals("WARN shown 0", delegate.messages.get(0));
+  }
+
+  @Test public void drop_policy_counts_messages_that_do_not_fit() throws Exception {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingLogger delegate = new RecordingLogger(true) {
+      @Override
+      public void log(Level level, String format, Object... args) {
+        writing.countDown();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.log(level, format, args);
+      }
+    };
+    AsyncLoggerFactory factory = new AsyncLoggerFactory(cls -> delegate, 2, OverflowPolicy.DROP);
+    Logger logger = factory.apply(getClass());
+
+    logger.warn("blocks the writer");
+    assertTrue(writing.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < 10; i++) {
+      logger.warn("message {}", i);
+    }
+    release.countDown();
+    factory.close();
+
+    // the slot of the message being written is only reused once it is written
+    assertEquals(9, factory.getDroppedCount());
+    assertEquals(9, factory.getDroppedCount(Level.WARN));
+    assertEquals(2, delegate.messages.size());
+  }
+}
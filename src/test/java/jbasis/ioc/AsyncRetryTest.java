@@ -0,0 +1,193 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.Async;
+import jbasis.interception.Jitter;
+import jbasis.interception.Retry;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+
+public class AsyncRetryTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void failed_stages_are_retried_without_blocking_the_caller() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncRetryRegistry.class));
+    AsyncRetryService svc = container.resolve(AsyncRetryService.class);
+
+    CompletableFuture<String> future = svc.succeedOnThirdTry().toCompletableFuture();
+
+    assertFalse(future.isDone());
+    assertEquals("3", future.get(5, TimeUnit.SECONDS));
+
+    container.close();
+  }
+
+  @Test public void last_failure_completes_the_future() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncRetryRegistry.class));
+    AsyncRetryService svc = container.resolve(AsyncRetryService.class);
+
+    CompletableFuture<String> future = svc.alwaysFail();
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> future.get(5, TimeUnit.SECONDS));
+    assertEquals("try 3", e.getCause().getMessage());
+
+    container.close();
+  }
+
+  @Test public void synchronous_failures_of_async_methods_are_retried() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncRetryRegistry.class));
+    AsyncRetryService svc = container.resolve(AsyncRetryService.class);
+
+    CompletableFuture<String> future = svc.throwOnFirstTry();
+
+    assertEquals("2", future.get(5, TimeUnit.SECONDS));
+
+    container.close();
+  }
+
+  @Test public void blocking_methods_retry_with_jitter() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncRetryRegistry.class));
+    AsyncRetryService svc = container.resolve(AsyncRetryService.class);
+
+    assertEquals(3, svc.blockingSucceedOnThirdTry());
+
+    container.close();
+  }
+
+  @Test public void retries_of_async_methods_are_dispatched_to_the_executor() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncRetryRegistry.class));
+    AsyncRetryService svc = container.resolve(AsyncRetryService.class);
+
+    assertTrue(svc.dispatchedRetry().get(5, TimeUnit.SECONDS));
+
+    container.close();
+  }
+
+  @Test public void methods_returning_a_future_are_retried_without_blocking() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(AsyncRetryRegistry.class));
+    AsyncRetryService svc = container.resolve(AsyncRetryService.class);
+
+    long start = System.nanoTime();
+    Future<String> future = svc.futureSucceedOnSecondTry();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue(elapsed < 250, "the call blocked for " + elapsed + " ms");
+    assertEquals("2", future.get(5, TimeUnit.SECONDS));
+
+    container.close();
+  }
+}
+
+class AsyncRetryRegistry extends Registry {
+  public AsyncRetryRegistry() {
+    register(cfg -> cfg.addTransient(AsyncRetryService.class, AsyncRetryServiceImpl.class));
+  }
+}
+
+interface AsyncRetryService {
+  CompletionStage<String> succeedOnThirdTry();
+
+  CompletableFuture<String> alwaysFail();
+
+  CompletableFuture<String> throwOnFirstTry();
+
+  int blockingSucceedOnThirdTry();
+
+  CompletableFuture<Boolean> dispatchedRetry();
+
+  Future<String> futureSucceedOnSecondTry();
+}
+
+class AsyncRetryServiceImpl implements AsyncRetryService {
+  private final AtomicInteger succeedTries = new AtomicInteger();
+  private final AtomicInteger failTries = new AtomicInteger();
+  private final AtomicInteger throwTries = new AtomicInteger();
+  private final AtomicInteger blockingTries = new AtomicInteger();
+  private final AtomicInteger dispatchedTries = new AtomicInteger();
+  private final AtomicInteger futureTries = new AtomicInteger();
+
+  @Override
+  @Retry(tries = 3, backOffIntervalMilliseconds = 20)
+  public CompletionStage<String> succeedOnThirdTry() {
+    int tries = succeedTries.incrementAndGet();
+    if (tries < 3) {
+      return CompletableFuture.supplyAsync(() -> {
+        throw new IllegalStateException("try " + tries);
+      });
+    }
+    return CompletableFuture.completedFuture(String.valueOf(tries));
+  }
+
+  @Override
+  @Retry(tries = 3, backOffIntervalMilliseconds = 2, exponentialBackOff = true,
+      jitter = Jitter.FULL)
+  public CompletableFuture<String> alwaysFail() {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    future.completeExceptionally(new IllegalStateException("try " + failTries.incrementAndGet()));
+    return future;
+  }
+
+  @Override
+  @Retry(tries = 2, backOffIntervalMilliseconds = 1)
+  public CompletableFuture<String> throwOnFirstTry() {
+    int tries = throwTries.incrementAndGet();
+    if (tries < 2) {
+      throw new IllegalStateException("try " + tries);
+    }
+    return CompletableFuture.completedFuture(String.valueOf(tries));
+  }
+
+  @Override
+  @Retry(tries = 3, backOffIntervalMilliseconds = 5, maxBackOffIntervalMilliseconds = 10,
+      jitter = Jitter.DECORRELATED)
+  public int blockingSucceedOnThirdTry() {
+    int tries = blockingTries.incrementAndGet();
+    if (tries < 3) {
+      throw new IllegalStateException("try " + tries);
+    }
+    return tries;
+  }
+
+  @Override
+  @Async
+  @Retry(tries = 2, backOffIntervalMilliseconds = 1)
+  public CompletableFuture<Boolean> dispatchedRetry() {
+    boolean onExecutor = !(Thread.currentThread() instanceof ForkJoinWorkerThread);
+    if (dispatchedTries.incrementAndGet() < 2) {
+      throw new IllegalStateException("first try fails");
+    }
+    return CompletableFuture.completedFuture(onExecutor);
+  }
+
+  @Override
+  @Retry(tries = 2, backOffIntervalMilliseconds = 500)
+  public Future<String> futureSucceedOnSecondTry() {
+    int tries = futureTries.incrementAndGet();
+    CompletableFuture<String> future = new CompletableFuture<>();
+    if (tries < 2) {
+      future.completeExceptionally(new IllegalStateException("try " + tries));
+    } else {
+      future.complete(String.valueOf(tries));
+    }
+    return future;
+  }
+}
@@ -0,0 +1,271 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.Bulkhead;
+import jbasis.interception.BulkheadFullException;
+import jbasis.interception.Retry;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.metrics.BulkheadMetrics;
+import jbasis.metrics.MethodBulkheads;
+
+public class BulkheadTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void calls_beyond_the_limit_are_rejected() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BulkheadServiceRegistry.class));
+    BulkheadService svc = container.resolve(BulkheadService.class);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(2);
+
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> svc.block(started, release));
+      threads[i].start();
+    }
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertThrows(BulkheadFullException.class, () -> svc.block(started, release));
+    BulkheadMetrics metrics = MethodBulkheads.find(
+        BulkheadServiceImpl.class.getMethod("block", CountDownLatch.class, CountDownLatch.class));
+    assertEquals(2, metrics.getInFlight());
+    assertEquals(2, metrics.getLimit());
+    assertEquals(1, metrics.getRejectedCount());
+
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, metrics.getInFlight());
+    svc.block(started, release);
+
+    container.close();
+  }
+
+  @Test public void waiting_calls_run_when_a_permit_is_released() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BulkheadServiceRegistry.class));
+    BulkheadService svc = container.resolve(BulkheadService.class);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+
+    Thread holder = new Thread(() -> svc.blockOrWait(started, release));
+    holder.start();
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    CompletableFuture.runAsync(release::countDown,
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+
+    svc.blockOrWait(started, release);
+    holder.join();
+
+    Method method = BulkheadServiceImpl.class.getMethod("blockOrWait",
+        CountDownLatch.class, CountDownLatch.class);
+    assertEquals(0, MethodBulkheads.find(method).getRejectedCount());
+    assertEquals(0, MethodBulkheads.find(method).getWaiting());
+
+    container.close();
+  }
+
+  @Test public void async_calls_get_a_failed_future_when_full() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BulkheadServiceRegistry.class));
+    BulkheadService svc = container.resolve(BulkheadService.class);
+    CompletableFuture<String> pending = new CompletableFuture<>();
+
+    CompletableFuture<String> first = svc.later(pending);
+    CompletableFuture<String> rejected = svc.later(pending);
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> rejected.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof BulkheadFullException);
+
+    pending.complete("done");
+    assertEquals("done", first.get(5, TimeUnit.SECONDS));
+    assertEquals("done", svc.later(pending).get(5, TimeUnit.SECONDS));
+
+    container.close();
+  }
+
+  @Test public void adaptive_limit_shrinks_on_errors() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BulkheadServiceRegistry.class));
+    BulkheadService svc = container.resolve(BulkheadService.class);
+
+    for (int i = 0; i < 20; i++) {
+      assertThrows(RuntimeException.class, () -> svc.fail());
+    }
+
+    BulkheadMetrics metrics = MethodBulkheads.find(BulkheadServiceImpl.class.getMethod("fail"));
+    assertEquals(2, metrics.getLimit());
+    assertEquals(0, metrics.getInFlight());
+
+    container.close();
+  }
+
+  @Test public void permit_is_released_once_when_a_later_interceptor_handles_the_error()
+      throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BulkheadServiceRegistry.class));
+    BulkheadService svc = container.resolve(BulkheadService.class);
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals("ok", svc.flaky());
+    }
+
+    BulkheadMetrics metrics = MethodBulkheads.find(BulkheadServiceImpl.class.getMethod("flaky"));
+    assertEquals(0, metrics.getInFlight());
+
+    container.close();
+  }
+
+  @Test public void the_limit_holds_with_retries_in_either_order() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BulkheadServiceRegistry.class));
+    BulkheadService svc = container.resolve(BulkheadService.class);
+
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 5; i++) {
+          try {
+            svc.retriedBusy();
+          } catch (RuntimeException e) {
+            // rejected after its last try
+          }
+          try {
+            svc.busyRetried();
+          } catch (RuntimeException e) {
+            // failed after its last try
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(1, BulkheadServiceImpl.retriedBusyMax.get());
+    assertEquals(1, BulkheadServiceImpl.busyRetriedMax.get());
+    assertEquals(0, MethodBulkheads.find(
+        BulkheadServiceImpl.class.getMethod("retriedBusy")).getInFlight());
+    assertEquals(0, MethodBulkheads.find(
+        BulkheadServiceImpl.class.getMethod("busyRetried")).getInFlight());
+
+    container.close();
+  }
+}
+
+class BulkheadServiceRegistry extends Registry {
+  public BulkheadServiceRegistry() {
+    register(cfg -> cfg.addTransient(BulkheadService.class, BulkheadServiceImpl.class));
+  }
+}
+
+interface BulkheadService {
+  void block(CountDownLatch started, CountDownLatch release);
+
+  void blockOrWait(CountDownLatch started, CountDownLatch release);
+
+  CompletableFuture<String> later(CompletableFuture<String> pending);
+
+  void fail();
+
+  String flaky();
+
+  void retriedBusy();
+
+  void busyRetried();
+}
+
+class BulkheadServiceImpl implements BulkheadService {
+  static final AtomicInteger retriedBusyMax = new AtomicInteger();
+  static final AtomicInteger busyRetriedMax = new AtomicInteger();
+  private static final AtomicInteger retriedBusyRunning = new AtomicInteger();
+  private static final AtomicInteger busyRetriedRunning = new AtomicInteger();
+  private static final AtomicInteger busyCalls = new AtomicInteger();
+  private int flakyCalls;
+
+  @Override
+  @Bulkhead(maxConcurrentCalls = 2)
+  public void block(CountDownLatch started, CountDownLatch release) {
+    started.countDown();
+    await(release);
+  }
+
+  @Override
+  @Bulkhead(maxConcurrentCalls = 1, maxWaitingCalls = 1, maxWaitMilliseconds = 5000)
+  public void blockOrWait(CountDownLatch started, CountDownLatch release) {
+    started.countDown();
+    await(release);
+  }
+
+  @Override
+  @Bulkhead(maxConcurrentCalls = 1)
+  public CompletableFuture<String> later(CompletableFuture<String> pending) {
+    return pending.thenApply(value -> value);
+  }
+
+  @Override
+  @Bulkhead(maxConcurrentCalls = 10, minConcurrentCalls = 2, adaptive = true)
+  public void fail() {
+    throw new IllegalStateException("failing");
+  }
+
+  @Override
+  @Bulkhead(maxConcurrentCalls = 1)
+  @Retry(tries = 3, backOffIntervalMilliseconds = 1)
+  public String flaky() {
+    if (++flakyCalls % 2 == 1) {
+      throw new IllegalStateException("first try fails");
+    }
+    return "ok";
+  }
+
+  @Override
+  @Retry(tries = 20, backOffIntervalMilliseconds = 2)
+  @Bulkhead(maxConcurrentCalls = 1)
+  public void retriedBusy() {
+    busy(retriedBusyRunning, retriedBusyMax);
+  }
+
+  @Override
+  @Bulkhead(maxConcurrentCalls = 1, maxWaitingCalls = 4, maxWaitMilliseconds = 5000)
+  @Retry(tries = 3, backOffIntervalMilliseconds = 2)
+  public void busyRetried() {
+    busy(busyRetriedRunning, busyRetriedMax);
+    if (busyCalls.incrementAndGet() % 2 == 1) {
+      throw new IllegalStateException("every other try fails");
+    }
+  }
+
+  private static void busy(AtomicInteger running, AtomicInteger maxRunning) {
+    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+    try {
+      TimeUnit.MILLISECONDS.sleep(2);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      running.decrementAndGet();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.Cacheable;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.metrics.CacheStats;
+import jbasis.metrics.MethodCaches;
+
+public class CacheableTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void hits_are_served_without_invoking_the_target() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CachedServiceRegistry.class));
+    CachedService svc = container.resolve(CachedService.class);
+    int before = CachedServiceImpl.lookups.get();
+
+    assertEquals("a:1", svc.lookup("a", new int[] { 1 }));
+    assertEquals("a:1", svc.lookup("a", new int[] { 1 }));
+    assertEquals("a:2", svc.lookup("a", new int[] { 2 }));
+    assertEquals("b:1", svc.lookup("b", new int[] { 1 }));
+    assertEquals("a:1", svc.lookup("a", new int[] { 1 }));
+
+    assertEquals(before + 3, CachedServiceImpl.lookups.get());
+    CacheStats stats = MethodCaches.find(
+        CachedServiceImpl.class.getMethod("lookup", String.class, int[].class));
+    assertEquals(2, stats.getHitCount());
+    assertEquals(3, stats.getMissCount());
+
+    container.close();
+  }
+
+  @Test public void frequently_used_entries_survive_a_scan() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CachedServiceRegistry.class));
+    CachedService svc = container.resolve(CachedService.class);
+
+    for (int i = 0; i < 10; i++) {
+      for (int hot = 0; hot < 5; hot++) {
+        svc.square(hot);
+      }
+    }
+    for (int cold = 1000; cold < 1200; cold++) {
+      svc.square(cold);
+    }
+    CacheStats stats = MethodCaches.find(CachedServiceImpl.class.getMethod("square", int.class));
+    long misses = stats.getMissCount();
+    for (int hot = 0; hot < 5; hot++) {
+      assertEquals(hot * hot, svc.square(hot));
+    }
+
+    assertEquals(misses, stats.getMissCount());
+    assertTrue(stats.getSize() <= 50, "size " + stats.getSize());
+    assertTrue(stats.getEvictionCount() >= 150, "evictions " + stats.getEvictionCount());
+
+    container.close();
+  }
+
+  @Test public void entries_expire_after_their_ttl() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CachedServiceRegistry.class));
+    CachedService svc = container.resolve(CachedService.class);
+
+    int first = svc.counter();
+    assertEquals(first, svc.counter());
+    TimeUnit.MILLISECONDS.sleep(60);
+
+    assertEquals(first + 1, svc.counter());
+
+    container.close();
+  }
+
+  @Test public void stale_entries_are_served_while_refreshing() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CachedServiceRegistry.class));
+    CachedService svc = container.resolve(CachedService.class);
+
+    int first = svc.refreshing();
+    TimeUnit.MILLISECONDS.sleep(30);
+
+    assertEquals(first, svc.refreshing());
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (svc.refreshing() == first && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(5);
+    }
+    assertEquals(first + 1, svc.refreshing());
+
+    container.close();
+  }
+
+  @Test public void instances_do_not_share_entries() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CachedServiceRegistry.class));
+    CachedService first = container.resolve(CachedService.class);
+    CachedService second = container.resolve(CachedService.class);
+
+    assertNotEquals(first.id(), second.id());
+    assertEquals(first.id(), first.id());
+    assertEquals(second.id(), second.id());
+
+    container.close();
+  }
+
+  @Test public void refreshes_run_on_the_container_executor() throws Exception {
+    Container container = new ContainerImpl(cfg -> {
+      cfg.useAsyncExecutor(() -> Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+      }));
+      cfg.apply(CachedServiceRegistry.class);
+    });
+    CachedService svc = container.resolve(CachedService.class);
+
+    String caller = svc.refreshingThread();
+    assertNotEquals("cache-refresh", caller);
+    TimeUnit.MILLISECONDS.sleep(30);
+
+    assertEquals(caller, svc.refreshingThread());
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (svc.refreshingThread().equals(caller) && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(5);
+    }
+    assertEquals("cache-refresh", svc.refreshingThread());
+
+    container.close();
+  }
+
+  @Test public void async_methods_cache_the_completed_value() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CachedServiceRegistry.class));
+    CachedService svc = container.resolve(CachedService.class);
+    int before = CachedServiceImpl.asyncLookups.get();
+
+    assertEquals("x!", svc.lookupAsync("x").get(5, TimeUnit.SECONDS));
+    assertEquals("x!", svc.lookupAsync("x").get(5, TimeUnit.SECONDS));
+
+    assertEquals(before + 1, CachedServiceImpl.asyncLookups.get());
+
+    container.close();
+  }
+
+  @Test public void methods_returning_a_future_are_served_a_future() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CachedServiceRegistry.class));
+    CachedService svc = container.resolve(CachedService.class);
+    int before = CachedServiceImpl.futureLookups.get();
+
+    assertEquals("y?", svc.lookupFuture("y").get(5, TimeUnit.SECONDS));
+    assertEquals("y?", svc.lookupFuture("y").get(5, TimeUnit.SECONDS));
+
+    assertEquals(before + 1, CachedServiceImpl.futureLookups.get());
+
+    container.close();
+  }
+}
+
+class CachedServiceRegistry extends Registry {
+  public CachedServiceRegistry() {
+    register(cfg -> cfg.addTransient(CachedService.class, CachedServiceImpl.class));
+  }
+}
+
+interface CachedService {
+  String lookup(String name, int[] values);
+
+  int square(int value);
+
+  int counter();
+
+  int refreshing();
+
+  String refreshingThread();
+
+  int id();
+
+  CompletableFuture<String> lookupAsync(String name);
+
+  Future<String> lookupFuture(String name);
+}
+
+class CachedServiceImpl implements CachedService {
+  static final AtomicInteger lookups = new AtomicInteger();
+  static final AtomicInteger asyncLookups = new AtomicInteger();
+  static final AtomicInteger futureLookups = new AtomicInteger();
+  private static final AtomicInteger counter = new AtomicInteger();
+  private static final AtomicInteger refreshes = new AtomicInteger();
+  private static final AtomicInteger ids = new AtomicInteger();
+  private final int id = ids.incrementAndGet();
+
+  @Override
+  @Cacheable
+  public String lookup(String name, int[] values) {
+    lookups.incrementAndGet();
+    return name + ":" + values[0];
+  }
+
+  @Override
+  @Cacheable(maxSize = 50)
+  public int square(int value) {
+    return value * value;
+  }
+
+  @Override
+  @Cacheable(ttlMilliseconds = 40)
+  public int counter() {
+    return counter.incrementAndGet();
+  }
+
+  @Override
+  @Cacheable(refreshAfterMilliseconds = 20)
+  public int refreshing() {
+    return refreshes.incrementAndGet();
+  }
+
+  @Override
+  @Cacheable(refreshAfterMilliseconds = 20)
+  public String refreshingThread() {
+    return Thread.currentThread().getName();
+  }
+
+  @Override
+  @Cacheable
+  public int id() {
+    return id;
+  }
+
+  @Override
+  @Cacheable
+  public CompletableFuture<String> lookupAsync(String name) {
+    asyncLookups.incrementAndGet();
+    return CompletableFuture.supplyAsync(() -> name + "!");
+  }
+
+  @Override
+  @Cacheable
+  public Future<String> lookupFuture(String name) {
+    futureLookups.incrementAndGet();
+    return CompletableFuture.supplyAsync(() -> name + "?");
+  }
+}
@@ -0,0 +1,210 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.CircuitBreaker;
+import jbasis.interception.CircuitBreakerOpenException;
+import jbasis.interception.Retry;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.util.JBasisException;
+
+public class CircuitBreakerTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void open_circuit_fails_fast_and_closes_after_successful_probes()
+      throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BreakerServiceRegistry.class));
+    BreakerService svc = container.resolve(BreakerService.class);
+    BreakerServiceImpl.failing = true;
+
+    for (int i = 0; i < 4; i++) {
+      assertThrows(JBasisException.class, () -> svc.call());
+    }
+    int invocations = BreakerServiceImpl.invocations.get();
+
+    CircuitBreakerOpenException first = assertThrows(CircuitBreakerOpenException.class,
+        () -> svc.call());
+    CircuitBreakerOpenException second = assertThrows(CircuitBreakerOpenException.class,
+        () -> svc.call());
+    assertSame(first, second);
+    assertEquals(0, first.getStackTrace().length);
+    assertEquals(invocations, BreakerServiceImpl.invocations.get());
+
+    TimeUnit.MILLISECONDS.sleep(60);
+    BreakerServiceImpl.failing = false;
+    assertEquals("ok", svc.call());
+    assertEquals("ok", svc.call());
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals("ok", svc.call());
+    }
+    assertEquals(invocations + 12, BreakerServiceImpl.invocations.get());
+
+    container.close();
+  }
+
+  @Test public void failed_probe_opens_the_circuit_again() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BreakerServiceRegistry.class));
+    BreakerService svc = container.resolve(BreakerService.class);
+
+    for (int i = 0; i < 4; i++) {
+      assertThrows(JBasisException.class, () -> svc.alwaysFails());
+    }
+    assertThrows(CircuitBreakerOpenException.class, () -> svc.alwaysFails());
+
+    TimeUnit.MILLISECONDS.sleep(60);
+    assertThrows(JBasisException.class, () -> svc.alwaysFails());
+    assertThrows(CircuitBreakerOpenException.class, () -> svc.alwaysFails());
+
+    container.close();
+  }
+
+  @Test public void async_methods_get_a_failed_future_while_open() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BreakerServiceRegistry.class));
+    BreakerService svc = container.resolve(BreakerService.class);
+
+    for (int i = 0; i < 4; i++) {
+      CompletableFuture<String> future = svc.failsAsync();
+      assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+    }
+
+    CompletableFuture<String> rejected = svc.failsAsync();
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> rejected.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+
+    container.close();
+  }
+
+  @Test public void each_call_is_recorded_once_when_a_later_interceptor_handles_the_error() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BreakerServiceRegistry.class));
+    BreakerService svc = container.resolve(BreakerService.class);
+
+    // every first try fails, so each call is one failure in the window
+    for (int i = 0; i < 4; i++) {
+      assertEquals("ok", svc.flaky());
+    }
+
+    assertThrows(CircuitBreakerOpenException.class, () -> svc.flaky());
+
+    container.close();
+  }
+
+  @Test public void retries_declared_before_the_breaker_do_not_invoke_an_open_circuit()
+      throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(BreakerServiceRegistry.class));
+    BreakerService svc = container.resolve(BreakerService.class);
+
+    for (int i = 0; i < 4; i++) {
+      assertThrows(JBasisException.class, () -> svc.retried());
+      CompletableFuture<String> future = svc.retriedAsync();
+      assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(24, BreakerServiceImpl.retriedInvocations.get());
+
+    for (int i = 0; i < 5; i++) {
+      assertThrows(CircuitBreakerOpenException.class, () -> svc.retried());
+      CompletableFuture<String> future = svc.retriedAsync();
+      ExecutionException e = assertThrows(ExecutionException.class,
+          () -> future.get(5, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+    }
+    assertEquals(24, BreakerServiceImpl.retriedInvocations.get());
+
+    container.close();
+  }
+}
+
+class BreakerServiceRegistry extends Registry {
+  public BreakerServiceRegistry() {
+    register(cfg -> cfg.addTransient(BreakerService.class, BreakerServiceImpl.class));
+  }
+}
+
+interface BreakerService {
+  String call();
+
+  String alwaysFails();
+
+  CompletableFuture<String> failsAsync();
+
+  String flaky();
+
+  String retried();
+
+  CompletableFuture<String> retriedAsync();
+}
+
+class BreakerServiceImpl implements BreakerService {
+  static final AtomicInteger invocations = new AtomicInteger();
+  static final AtomicInteger retriedInvocations = new AtomicInteger();
+  static volatile boolean failing;
+  private int flakyCalls;
+
+  @Override
+  @CircuitBreaker(windowSize = 10, minimumCalls = 4, openDurationMilliseconds = 50,
+      halfOpenProbes = 2)
+  public String call() {
+    invocations.incrementAndGet();
+    if (failing) {
+      throw new IllegalStateException("failing");
+    }
+    return "ok";
+  }
+
+  @Override
+  @CircuitBreaker(windowSize = 10, minimumCalls = 4, openDurationMilliseconds = 50,
+      halfOpenProbes = 1)
+  public String alwaysFails() {
+    throw new IllegalStateException("failing");
+  }
+
+  @Override
+  @CircuitBreaker(windowSize = 10, minimumCalls = 4)
+  public CompletableFuture<String> failsAsync() {
+    return CompletableFuture.supplyAsync(() -> {
+      throw new IllegalStateException("failing");
+    });
+  }
+
+  @Override
+  @CircuitBreaker(windowSize = 4, minimumCalls = 4, failureRateThreshold = 75)
+  @Retry(tries = 2, backOffIntervalMilliseconds = 1)
+  public String flaky() {
+    if (++flakyCalls % 2 == 1) {
+      throw new IllegalStateException("first try fails");
+    }
+    return "ok";
+  }
+
+  @Override
+  @Retry(tries = 3, backOffIntervalMilliseconds = 1)
+  @CircuitBreaker(windowSize = 4, minimumCalls = 4)
+  public String retried() {
+    retriedInvocations.incrementAndGet();
+    throw new IllegalStateException("failing");
+  }
+
+  @Override
+  @Retry(tries = 3, backOffIntervalMilliseconds = 1)
+  @CircuitBreaker(windowSize = 4, minimumCalls = 4)
+  public CompletableFuture<String> retriedAsync() {
+    retriedInvocations.incrementAndGet();
+    return CompletableFuture.failedFuture(new IllegalStateException("failing"));
+  }
+}
@@ -0,0 +1,214 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.Coalesce;
+import jbasis.interception.Retry;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.util.JBasisException;
+
+public class CoalesceTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void concurrent_calls_with_equal_arguments_share_one_invocation()
+      throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CoalescedServiceRegistry.class));
+    CoalescedService svc = container.resolve(CoalescedService.class);
+    CoalescedServiceImpl.release = new CountDownLatch(1);
+    CoalescedServiceImpl.loads.set(0);
+
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      results.add(CompletableFuture.supplyAsync(() -> svc.load("key")));
+    }
+    TimeUnit.MILLISECONDS.sleep(50);
+    CoalescedServiceImpl.release.countDown();
+
+    for (CompletableFuture<String> result : results) {
+      assertEquals("key1", result.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, CoalescedServiceImpl.loads.get());
+
+    assertEquals("key2", svc.load("key"));
+    assertEquals("other3", svc.load("other"));
+
+    container.close();
+  }
+
+  @Test public void waiting_calls_share_the_failure() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CoalescedServiceRegistry.class));
+    CoalescedService svc = container.resolve(CoalescedService.class);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<Void> leader = CompletableFuture.runAsync(() -> svc.fail(started, release));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    CompletableFuture<Void> follower = CompletableFuture.runAsync(() -> svc.fail(started, release));
+    TimeUnit.MILLISECONDS.sleep(50);
+    release.countDown();
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> follower.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof JBasisException);
+    assertEquals("failed", e.getCause().getCause().getMessage());
+    assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+    assertEquals(1, CoalescedServiceImpl.failures.get());
+
+    container.close();
+  }
+
+  @Test public void async_calls_share_the_pending_result() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CoalescedServiceRegistry.class));
+    CoalescedService svc = container.resolve(CoalescedService.class);
+    CompletableFuture<String> pending = new CompletableFuture<>();
+    CoalescedServiceImpl.pending = pending;
+
+    CompletableFuture<String> first = svc.loadAsync(7);
+    CompletableFuture<String> second = svc.loadAsync(7);
+    pending.complete("seven");
+
+    assertEquals("seven", first.get(5, TimeUnit.SECONDS));
+    assertEquals("seven", second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, CoalescedServiceImpl.asyncLoads.get());
+
+    container.close();
+  }
+
+  @Test public void waiting_calls_share_the_result_of_a_retried_call() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CoalescedServiceRegistry.class));
+    CoalescedService svc = container.resolve(CoalescedService.class);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<String> leader =
+        CompletableFuture.supplyAsync(() -> svc.retried(started, release));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    CompletableFuture<String> follower =
+        CompletableFuture.supplyAsync(() -> svc.retried(started, release));
+    TimeUnit.MILLISECONDS.sleep(50);
+    release.countDown();
+
+    assertEquals("ok", leader.get(5, TimeUnit.SECONDS));
+    assertEquals("ok", follower.get(5, TimeUnit.SECONDS));
+
+    container.close();
+  }
+
+  @Test public void waiting_calls_invoke_the_method_after_the_maximum_wait() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CoalescedServiceRegistry.class));
+    CoalescedService svc = container.resolve(CoalescedService.class);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<Integer> leader =
+        CompletableFuture.supplyAsync(() -> svc.hang(started, release));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertEquals(2, svc.hang(started, release));
+    assertFalse(leader.isDone());
+    release.countDown();
+    assertEquals(1, (int) leader.get(5, TimeUnit.SECONDS));
+
+    container.close();
+  }
+}
+
+class CoalescedServiceRegistry extends Registry {
+  public CoalescedServiceRegistry() {
+    register(cfg -> cfg.addTransient(CoalescedService.class, CoalescedServiceImpl.class));
+  }
+}
+
+interface CoalescedService {
+  String load(String key);
+
+  void fail(CountDownLatch started, CountDownLatch release);
+
+  CompletableFuture<String> loadAsync(int key);
+
+  String retried(CountDownLatch started, CountDownLatch release);
+
+  int hang(CountDownLatch started, CountDownLatch release);
+}
+
+class CoalescedServiceImpl implements CoalescedService {
+  static final AtomicInteger loads = new AtomicInteger();
+  static final AtomicInteger failures = new AtomicInteger();
+  static final AtomicInteger asyncLoads = new AtomicInteger();
+  static volatile CountDownLatch release = new CountDownLatch(0);
+  static volatile CompletableFuture<String> pending;
+  private volatile int retriedCalls;
+  private volatile int hangCalls;
+
+  @Override
+  @Coalesce
+  public String load(String key) {
+    await(release);
+    return key + loads.incrementAndGet();
+  }
+
+  @Override
+  @Coalesce
+  public void fail(CountDownLatch started, CountDownLatch release) {
+    failures.incrementAndGet();
+    started.countDown();
+    await(release);
+    throw new IllegalStateException("failed");
+  }
+
+  @Override
+  @Coalesce
+  public CompletableFuture<String> loadAsync(int key) {
+    asyncLoads.incrementAndGet();
+    return pending.thenApply(value -> value);
+  }
+
+  @Override
+  @Retry(tries = 2, backOffIntervalMilliseconds = 1)
+  @Coalesce
+  public String retried(CountDownLatch started, CountDownLatch release) {
+    if (++retriedCalls == 1) {
+      started.countDown();
+      await(release);
+      throw new IllegalStateException("transient");
+    }
+    return "ok";
+  }
+
+  @Override
+  @Coalesce(maxWaitMilliseconds = 50)
+  public int hang(CountDownLatch started, CountDownLatch release) {
+    int call = ++hangCalls;
+    if (call == 1) {
+      started.countDown();
+      await(release);
+    }
+    return call;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package jbasis.ioc;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -46,6 +47,19 @@ public class ContainerImplByTypeTest {
     c.close();
   }
   
+  @Test public void probing_unregistered_types_does_not_assign_ids() {
+    ContainerImpl c = new ContainerImpl(cfg -> cfg.apply(new ContainerImplByTypeTestRegistry()));
+
+    assertFalse(c.tryResolve(Unregistered.class).isPresent());
+    assertEquals(ServiceIds.NONE, ServiceIds.find(Unregistered.class));
+
+    int first = ServiceIds.assign(Singleton.class);
+    int next = ServiceIds.assign(Unregistered.class);
+    assertEquals(next, ServiceIds.assign(Unregistered.class));
+    assertFalse(next <= first);
+    c.close();
+  }
+
   private void assertNotEqual(Transient t1, Transient t2) {
 }
 
@@ -74,6 +88,9 @@ public interface Dependency {
     Dependency getDependency();
   }
 
+  public interface Unregistered {
+  }
+
   public interface Scoped {
     void exec();
   }
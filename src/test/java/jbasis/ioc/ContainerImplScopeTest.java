@@ -106,6 +106,58 @@ public class ContainerImplScopeTest {
 
     container.close();
   }
+
+  @Test public void scopes_do_not_share_scoped_services() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(ScopeTestRegistry.class));
+
+    ServiceFactory scope1 = container.createScope();
+    ServiceFactory scope2 = container.createScope();
+
+    ScopedService svc1 = scope1.resolve(ScopedService.class);
+    ScopedService svc2 = scope2.resolve(ScopedService.class);
+
+    assertNotEquals(svc1.getId(), svc2.getId());
+
+    scope1.close();
+
+    assertTrue(svc1.isClosed());
+    assertFalse(svc2.isClosed());
+
+    scope2.close();
+
+    assertTrue(svc2.isClosed());
+
+    container.close();
+  }
+
+  @Test public void autowired_scoped_dependency_is_shared_within_scope() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(ScopeTestRegistry.class));
+
+    ServiceFactory scope = container.createScope();
+
+    ScopedDependency dep = scope.resolve(ScopedDependency.class);
+    AutowiredScopedService svc = scope.resolve(AutowiredScopedService.class);
+
+    assertEquals(dep, svc.getDep());
+
+    scope.close();
+
+    container.close();
+  }
+
+  @Test public void closing_unused_scope_closes_nothing() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(ScopeTestRegistry.class));
+
+    ScopeTestSingletonService singleton = container.resolve(ScopeTestSingletonService.class);
+
+    container.createScope().close();
+
+    assertFalse(singleton.isClosed());
+
+    container.close();
+
+    assertTrue(singleton.isClosed());
+  }
 }
 
 class ScopeTestRegistry extends Registry {
@@ -115,6 +167,7 @@ class ScopeTestRegistry extends Registry {
     register(cfg -> cfg.addTransient(ScopeTestTransientService.class, x -> new TransientImpl()));
     register(cfg -> cfg.addScoped(ScopedDependency.class, x -> new ScopedDependencyImpl()));
     register(cfg -> cfg.addScoped(ScopedWithScopedDependency.class, x -> new ScopedWithScopedDependencyImpl(x.resolve(ScopedDependency.class))));
+    register(cfg -> cfg.addScoped(AutowiredScopedService.class, AutowiredScopedService.class));
   }
 }
 
@@ -215,4 +268,15 @@ interface ScopedDependency {
 
 class ScopedDependencyImpl  implements ScopedDependency{
 
-}
\ No newline at end of file
+}
+class AutowiredScopedService {
+  private ScopedDependency dep;
+
+  AutowiredScopedService(ScopedDependency dep) {
+    this.dep = dep;
+  }
+
+  public ScopedDependency getDep() {
+    return dep;
+  }
+}
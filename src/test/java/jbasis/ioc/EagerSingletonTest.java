@@ -0,0 +1,187 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.util.JBasisException;
+
+public class EagerSingletonTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void singletons_are_created_before_the_container_is_returned() {
+    EagerGraph.reset();
+
+    Container container = new ContainerImpl(cfg -> {
+      cfg.apply(EagerGraphRegistry.class);
+      cfg.useEagerSingletons(2);
+    });
+
+    List<String> created = EagerGraph.created;
+    assertEquals(4, created.size());
+    assertEquals("config", created.get(0));
+    assertEquals("top", created.get(3));
+    assertTrue(EagerGraph.parallel, "left and right were not created in parallel");
+
+    Top top = container.resolve(Top.class);
+    assertSame(container.resolve(Left.class), top.left);
+    assertEquals(4, EagerGraph.created.size());
+
+    container.close();
+  }
+
+  @Test public void singletons_are_lazy_by_default() {
+    EagerGraph.reset();
+    EagerGraph.waitForSibling = false;
+
+    Container container = new ContainerImpl(cfg -> cfg.apply(EagerGraphRegistry.class));
+
+    assertEquals(0, EagerGraph.created.size());
+    container.resolve(Left.class);
+    assertEquals(List.of("config", "left"), EagerGraph.created);
+
+    container.close();
+  }
+
+  @Test public void circular_dependencies_are_reported() {
+    JBasisException e = assertThrows(JBasisException.class, () -> new ContainerImpl(cfg -> {
+      cfg.apply(CircularRegistry.class);
+      cfg.useEagerSingletons();
+    }));
+
+    assertTrue(e.getMessage().contains("Circular dependency"), e.getMessage());
+  }
+
+  @Test public void created_singletons_are_closed_when_one_fails() {
+    EagerResource.closed = false;
+
+    assertThrows(JBasisException.class, () -> new ContainerImpl(cfg -> {
+      cfg.apply(BrokenRegistry.class);
+      cfg.useEagerSingletons();
+    }));
+
+    assertTrue(EagerResource.closed);
+  }
+}
+
+class EagerGraphRegistry extends Registry {
+  public EagerGraphRegistry() {
+    register(cfg -> cfg
+        .addSingleton(Config.class, Config.class)
+        .addSingleton(Left.class, Left.class)
+        .addSingleton(Right.class, Right.class)
+        .addSingleton(Top.class, Top.class));
+  }
+}
+
+class EagerGraph {
+  static final List<String> created = new CopyOnWriteArrayList<>();
+  static volatile CountDownLatch siblings;
+  static volatile boolean waitForSibling;
+  static volatile boolean parallel;
+
+  static void reset() {
+    created.clear();
+    siblings = new CountDownLatch(2);
+    waitForSibling = true;
+    parallel = true;
+  }
+
+  static void awaitSibling() {
+    if (!waitForSibling) {
+      return;
+    }
+    siblings.countDown();
+    try {
+      if (!siblings.await(5, TimeUnit.SECONDS)) {
+        parallel = false;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
+
+class Config {
+  Config() {
+    EagerGraph.created.add("config");
+  }
+}
+
+class Left {
+  Left(Config config) {
+    EagerGraph.awaitSibling();
+    EagerGraph.created.add("left");
+  }
+}
+
+class Right {
+  Right(Config config) {
+    EagerGraph.awaitSibling();
+    EagerGraph.created.add("right");
+  }
+}
+
+class Top {
+  final Left left;
+
+  Top(Left left, Right right) {
+    this.left = left;
+    EagerGraph.created.add("top");
+  }
+}
+
+class CircularRegistry extends Registry {
+  public CircularRegistry() {
+    register(cfg -> cfg
+        .addSingleton(Chicken.class, Chicken.class)
+        .addSingleton(Egg.class, Egg.class));
+  }
+}
+
+class Chicken {
+  Chicken(Egg egg) {
+  }
+}
+
+class Egg {
+  Egg(Chicken chicken) {
+  }
+}
+
+class BrokenRegistry extends Registry {
+  public BrokenRegistry() {
+    register(cfg -> cfg
+        .addSingleton(EagerResource.class, EagerResource.class)
+        .addSingleton(EagerBroken.class, EagerBroken.class));
+  }
+}
+
+class EagerResource implements AutoCloseable {
+  static volatile boolean closed;
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+}
+
+class EagerBroken {
+  EagerBroken(EagerResource resource) {
+    throw new IllegalStateException("broken");
+  }
+}
@@ -0,0 +1,192 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Proxy;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.EmptyInterceptor;
+import jbasis.interception.InvocationContext;
+import jbasis.interception.Profile;
+import jbasis.interception.Stateless;
+import jbasis.interception.WithInterceptor;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.util.JBasisException;
+
+public class GeneratedProxyTest {
+
+  static Container _container;
+
+  @BeforeAll public static void before() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+    _container = new ContainerImpl(cfg -> {
+      cfg.useProxyEngine(ProxyEngine.GENERATED);
+      cfg.apply(GeneratedProxyTestRegistry.class);
+    });
+  }
+
+  @Test public void generated_proxy_is_not_a_jdk_proxy() {
+    Calculator calculator = _container.resolve(Calculator.class);
+    assertFalse(Proxy.isProxyClass(calculator.getClass()));
+  }
+
+  @Test public void direct_methods_pass_primitives_and_references() {
+    Calculator calculator = _container.resolve(Calculator.class);
+
+    assertEquals(5, calculator.add(2, 3));
+    assertEquals(7L, calculator.add(3L, 4L));
+    assertEquals(2.5d, calculator.half(5d), 0d);
+    assertEquals("a-b", calculator.join("a", "b"));
+    assertEquals(3, calculator.count(new String[] {"x", "y", "z"}));
+  }
+
+  @Test public void intercepted_methods_box_and_unbox() {
+    Calculator calculator = _container.resolve(Calculator.class);
+
+    assertEquals(12, calculator.multiply(3, 4));
+    assertEquals(9L, calculator.square(3L));
+    assertTrue(calculator.isPositive(1.5d));
+    calculator.reset();
+  }
+
+  @Test public void intercepted_errors_are_wrapped() {
+    Calculator calculator = _container.resolve(Calculator.class);
+    assertThrows(JBasisException.class, () -> calculator.fail());
+  }
+
+  @Test public void object_methods_keep_proxy_semantics() {
+    Calculator c1 = _container.resolve(Calculator.class);
+    Calculator c2 = _container.resolve(Calculator.class);
+
+    assertNotEquals(c1, c2);
+    assertEquals(c1, c1);
+    assertEquals("calculator", c1.toString());
+  }
+
+  @Test public void default_methods_are_dispatched_to_target() {
+    Calculator calculator = _container.resolve(Calculator.class);
+    assertEquals(10, calculator.twice(5));
+  }
+
+  @Test public void short_circuited_reference_methods_return_null() {
+    Calculator calculator = _container.resolve(Calculator.class);
+    assertNull(calculator.skipped());
+  }
+
+  @AfterAll public static void after() {
+    _container.close();
+  }
+}
+
+class GeneratedProxyTestRegistry extends Registry {
+  public GeneratedProxyTestRegistry() {
+    register(cfg -> {
+      cfg.addTransient(Calculator.class, CalculatorImpl.class);
+    });
+  }
+}
+
+interface Calculator {
+  int add(int x, int y);
+  long add(long x, long y);
+  double half(double x);
+  String join(String a, String b);
+  int count(String[] values);
+  int multiply(int x, int y);
+  long square(long x);
+  boolean isPositive(double x);
+  void reset();
+  void fail();
+  String skipped();
+
+  default int twice(int x) {
+    return add(x, x);
+  }
+}
+
+class CalculatorImpl implements Calculator {
+  public int add(int x, int y) {
+    return x + y;
+  }
+
+  public long add(long x, long y) {
+    return x + y;
+  }
+
+  public double half(double x) {
+    return x / 2;
+  }
+
+  public String join(String a, String b) {
+    return a + "-" + b;
+  }
+
+  public int count(String[] values) {
+    return values.length;
+  }
+
+  @Profile
+  public int multiply(int x, int y) {
+    return x * y;
+  }
+
+  @Profile
+  public long square(long x) {
+    return x * x;
+  }
+
+  @Profile
+  public boolean isPositive(double x) {
+    return x > 0;
+  }
+
+  @Profile
+  public void reset() {
+  }
+
+  @Profile
+  public void fail() {
+    throw new IllegalStateException("failed");
+  }
+
+  @Profile
+  @Skip
+  public String skipped() {
+    return "not skipped";
+  }
+
+  @Override
+  public String toString() {
+    return "calculator";
+  }
+}
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = SkipInterceptor.class)
+@interface Skip {
+}
+
+@Stateless
+class SkipInterceptor extends EmptyInterceptor {
+  public SkipInterceptor(Skip annotation) {
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    return false;
+  }
+}
@@ -0,0 +1,129 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.EmptyInterceptor;
+import jbasis.interception.Stateless;
+import jbasis.interception.WithInterceptor;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+
+public class InterceptedMethodTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void chain_is_cached_per_implementation_method() throws Exception {
+    Method method = CountedService.class.getMethod("exec");
+
+    InterceptedMethod first = InterceptedMethod.of(CountedServiceImpl.class, method);
+    InterceptedMethod second = InterceptedMethod.of(CountedServiceImpl.class, method);
+
+    assertSame(first, second);
+    assertEquals(CountedServiceImpl.class, first.getImplementationMethod().getDeclaringClass());
+  }
+
+  @Test public void stateless_interceptors_are_shared_across_calls_and_proxies() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(CountedServiceRegistry.class));
+
+    int sharedBefore = SharedCountingInterceptor.instances.get();
+    int perCallBefore = PerCallCountingInterceptor.instances.get();
+
+    for (int i = 0; i < 5; i++) {
+      container.resolve(CountedService.class).exec();
+    }
+
+    assertTrue(SharedCountingInterceptor.instances.get() - sharedBefore <= 1);
+    assertEquals(5, PerCallCountingInterceptor.instances.get() - perCallBefore);
+
+    container.close();
+  }
+
+  @Test public void services_without_intercepted_methods_are_not_proxied() {
+    assertTrue(InterceptedMethod.isIntercepted(CountedServiceImpl.class, CountedService.class));
+    assertFalse(InterceptedMethod.isIntercepted(PlainServiceImpl.class, CountedService.class));
+
+    for (ProxyEngine engine : ProxyEngine.values()) {
+      Container container = new ContainerImpl(cfg -> {
+        cfg.useProxyEngine(engine);
+        cfg.apply(CountedServiceRegistry.class);
+      });
+
+      assertEquals(PlainServiceImpl.class, container.resolve(PlainService.class).getClass());
+      assertFalse(container.resolve(CountedService.class) instanceof CountedServiceImpl);
+
+      container.close();
+    }
+  }
+}
+
+class CountedServiceRegistry extends Registry {
+  public CountedServiceRegistry() {
+    register(cfg -> cfg.addTransient(CountedService.class, CountedServiceImpl.class));
+    register(cfg -> cfg.addTransient(PlainService.class, PlainServiceImpl.class));
+  }
+}
+
+interface PlainService extends CountedService {
+}
+
+class PlainServiceImpl implements PlainService {
+  @Override
+  public void exec() {
+  }
+}
+
+interface CountedService {
+  void exec();
+}
+
+class CountedServiceImpl implements CountedService {
+  @Override
+  @SharedCounting
+  @PerCallCounting
+  public void exec() {
+  }
+}
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = SharedCountingInterceptor.class)
+@interface SharedCounting {
+}
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = PerCallCountingInterceptor.class)
+@interface PerCallCounting {
+}
+
+@Stateless
+class SharedCountingInterceptor extends EmptyInterceptor {
+  static final AtomicInteger instances = new AtomicInteger();
+
+  public SharedCountingInterceptor(SharedCounting annotation) {
+    instances.incrementAndGet();
+  }
+}
+
+class PerCallCountingInterceptor extends EmptyInterceptor {
+  static final AtomicInteger instances = new AtomicInteger();
+
+  public PerCallCountingInterceptor(PerCallCounting annotation) {
+    instances.incrementAndGet();
+  }
+}
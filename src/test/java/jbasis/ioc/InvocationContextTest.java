@@ -0,0 +1,164 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.EmptyInterceptor;
+import jbasis.interception.InvocationContext;
+import jbasis.interception.Retry;
+import jbasis.interception.Stateless;
+import jbasis.interception.WithInterceptor;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+
+public class InvocationContextTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void stateless_interceptors_keep_per_call_state_in_the_context() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(ContextServiceRegistry.class));
+    ContextService svc = container.resolve(ContextService.class);
+
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int offset = t * 1000;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          svc.echo(offset + i);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(4000, EchoInterceptor.mismatches.size() + EchoInterceptor.matches());
+    assertEquals(Collections.emptyList(), EchoInterceptor.mismatches);
+
+    container.close();
+  }
+
+  @Test public void short_circuit_returns_the_context_result() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(ContextServiceRegistry.class));
+    ContextService svc = container.resolve(ContextService.class);
+
+    assertEquals("cached", svc.cached());
+
+    container.close();
+  }
+
+  @Test public void retry_returns_the_result_of_the_successful_try() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(ContextServiceRegistry.class));
+    ContextService svc = container.resolve(ContextService.class);
+
+    assertEquals("third", svc.flaky());
+
+    container.close();
+  }
+}
+
+class ContextServiceRegistry extends Registry {
+  public ContextServiceRegistry() {
+    register(cfg -> cfg.addTransient(ContextService.class, ContextServiceImpl.class));
+  }
+}
+
+interface ContextService {
+  int echo(int value);
+
+  String cached();
+
+  String flaky();
+}
+
+class ContextServiceImpl implements ContextService {
+  private int tries;
+
+  @Override
+  @Echo
+  public int echo(int value) {
+    return value;
+  }
+
+  @Override
+  @Cached
+  public String cached() {
+    throw new IllegalStateException("should not be invoked");
+  }
+
+  @Override
+  @Retry(tries = 3, backOffIntervalMilliseconds = 1)
+  public String flaky() {
+    tries++;
+    if (tries < 3) {
+      throw new IllegalStateException("try " + tries);
+    }
+    return "third";
+  }
+}
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = EchoInterceptor.class)
+@interface Echo {
+}
+
+@Stateless
+class EchoInterceptor extends EmptyInterceptor {
+  static final List<Object> mismatches = Collections.synchronizedList(new ArrayList<>());
+  private static final AtomicInteger matched = new AtomicInteger();
+
+  public EchoInterceptor(Echo echo) {
+  }
+
+  static int matches() {
+    return matched.get();
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    context.setAttribute(context.getArguments()[0]);
+    return true;
+  }
+
+  @Override
+  public void afterInvoke(InvocationContext context) {
+    if (context.getAttribute().equals(context.getResult())) {
+      matched.incrementAndGet();
+    } else {
+      mismatches.add(context.getResult());
+    }
+  }
+}
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@WithInterceptor(type = CachedInterceptor.class)
+@interface Cached {
+}
+
+@Stateless
+class CachedInterceptor extends EmptyInterceptor {
+  public CachedInterceptor(Cached cached) {
+  }
+
+  @Override
+  public boolean beforeInvoke(InvocationContext context) {
+    context.setResult("cached");
+    return false;
+  }
+}
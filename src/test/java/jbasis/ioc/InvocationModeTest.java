@@ -0,0 +1,142 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.Profile;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.util.JBasisException;
+
+public class InvocationModeTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void can_construct_and_invoke_with_reflection() {
+    assertModeWorks(InvocationMode.REFLECTION);
+  }
+
+  @Test public void can_construct_and_invoke_with_method_handles() {
+    assertModeWorks(InvocationMode.METHOD_HANDLE);
+  }
+
+  @Test public void method_invoker_rethrows_unwrapped_exceptions() throws Exception {
+    Method method = GreeterImpl.class.getMethod("fail");
+    for (InvocationMode mode : InvocationMode.values()) {
+      MethodInvoker invoker = MethodInvoker.of(method, mode);
+      assertThrows(IllegalStateException.class, () -> invoker.invoke(new GreeterImpl(null), null));
+    }
+  }
+
+  @Test public void constructor_errors_are_not_wrapped() {
+    for (InvocationMode mode : InvocationMode.values()) {
+      Container container = new ContainerImpl(cfg -> {
+        cfg.useInvocationMode(mode);
+        cfg.apply(FailingConstructorRegistry.class);
+      });
+
+      assertThrows(AssertionError.class, () -> container.resolve(Broken.class));
+      JBasisException e = assertThrows(JBasisException.class,
+          () -> container.resolve(Rejecting.class));
+      assertTrue(e.getCause() instanceof IllegalStateException);
+
+      container.close();
+    }
+  }
+
+  private void assertModeWorks(InvocationMode mode) {
+    Container container = new ContainerImpl(cfg -> {
+      cfg.useInvocationMode(mode);
+      cfg.apply(InvocationModeTestRegistry.class);
+    });
+
+    Greeter greeter = container.resolve(Greeter.class);
+    assertNotNull(greeter);
+    assertEquals("hello, world", greeter.greet("world"));
+    assertEquals(3, greeter.length("abc"));
+
+    JBasisException e = assertThrows(JBasisException.class, () -> greeter.fail());
+    assertTrue(e.getCause() instanceof IllegalStateException);
+
+    container.close();
+  }
+}
+
+class InvocationModeTestRegistry extends Registry {
+  public InvocationModeTestRegistry() {
+    register(cfg -> {
+      cfg.addSingleton(Salutation.class, x -> () -> "hello");
+      cfg.addTransient(Greeter.class, GreeterImpl.class);
+    });
+  }
+}
+
+interface Salutation {
+  String get();
+}
+
+interface Greeter {
+  String greet(String name);
+  int length(String value);
+  void fail();
+}
+
+class GreeterImpl implements Greeter {
+  private final Salutation salutation;
+
+  public GreeterImpl(Salutation salutation) {
+    this.salutation = salutation;
+  }
+
+  @Override
+  @Profile
+  public String greet(String name) {
+    return salutation.get() + ", " + name;
+  }
+
+  @Override
+  @Profile
+  public int length(String value) {
+    return value.length();
+  }
+
+  @Override
+  @Profile
+  public void fail() {
+    throw new IllegalStateException("failed");
+  }
+}
+
+class FailingConstructorRegistry extends Registry {
+  public FailingConstructorRegistry() {
+    register(cfg -> {
+      cfg.addTransient(Broken.class, BrokenImpl.class);
+      cfg.addTransient(Rejecting.class, RejectingImpl.class);
+    });
+  }
+}
+
+interface Broken {}
+
+class BrokenImpl implements Broken {
+  public BrokenImpl() {
+    throw new AssertionError("broken");
+  }
+}
+
+interface Rejecting {}
+
+class RejectingImpl implements Rejecting {
+  public RejectingImpl() {
+    throw new IllegalStateException("rejected");
+  }
+}
@@ -0,0 +1,156 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.Profile;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.metrics.LatencyHistogram;
+import jbasis.metrics.LatencySnapshot;
+import jbasis.metrics.MethodLatencies;
+import jbasis.util.JBasisException;
+
+public class LatencyHistogramTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void percentiles_are_within_histogram_precision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 100_000; i++) {
+      histogram.record(i * 10);
+    }
+
+    LatencySnapshot snapshot = histogram.snapshot();
+
+    assertEquals(100_000, snapshot.getCount());
+    assertEquals(500_005d, snapshot.getMean(), 0.001d);
+    assertEquals(1_000_000, snapshot.getMax());
+    assertWithin(500_000, snapshot.getP50());
+    assertWithin(990_000, snapshot.getP99());
+    assertWithin(999_000, snapshot.getP999());
+    assertEquals(1_000_000, snapshot.getValueAtPercentile(100));
+  }
+
+  @Test public void values_beyond_the_trackable_range_keep_the_exact_max() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+
+    LatencySnapshot snapshot = histogram.snapshot();
+
+    assertEquals(2, snapshot.getCount());
+    assertEquals(0, snapshot.getP50());
+    assertEquals(Long.MAX_VALUE, snapshot.getMax());
+  }
+
+  @Test public void reset_starts_a_new_interval() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(100);
+    histogram.record(200);
+
+    assertEquals(2, histogram.snapshotAndReset().getCount());
+
+    LatencySnapshot empty = histogram.snapshot();
+    assertEquals(0, empty.getCount());
+    assertEquals(0, empty.getP99());
+
+    histogram.record(300);
+    assertEquals(300, histogram.snapshot().getMax());
+  }
+
+  @Test public void concurrent_recording_is_not_lost() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          histogram.record(i);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(80_000, histogram.snapshot().getCount());
+  }
+
+  @Test public void profiled_methods_are_recorded() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(ProfiledServiceRegistry.class));
+    Method multiply = ProfiledServiceImpl.class.getMethod("multiply", int.class, int.class);
+
+    ProfiledService svc = container.resolve(ProfiledService.class);
+    long before = count(multiply);
+    for (int i = 0; i < 10; i++) {
+      svc.multiply(i, i);
+    }
+
+    assertNotNull(MethodLatencies.find(multiply));
+    assertEquals(10, count(multiply) - before);
+
+    container.close();
+  }
+
+  @Test public void failed_calls_are_recorded() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(ProfiledServiceRegistry.class));
+    Method fail = ProfiledServiceImpl.class.getMethod("fail");
+
+    ProfiledService svc = container.resolve(ProfiledService.class);
+    long before = count(fail);
+    for (int i = 0; i < 5; i++) {
+      assertThrows(JBasisException.class, () -> svc.fail());
+    }
+
+    assertEquals(5, count(fail) - before);
+
+    container.close();
+  }
+
+  private static long count(Method method) {
+    LatencyHistogram histogram = MethodLatencies.find(method);
+    return histogram == null ? 0 : histogram.snapshot().getCount();
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(Math.abs(actual - expected) <= expected * 0.02,
+        "expected " + expected + " within 2% but was " + actual);
+  }
+}
+
+class ProfiledServiceRegistry extends Registry {
+  public ProfiledServiceRegistry() {
+    register(cfg -> cfg.addTransient(ProfiledService.class, ProfiledServiceImpl.class));
+  }
+}
+
+interface ProfiledService {
+  int multiply(int a, int b);
+
+  void fail();
+}
+
+class ProfiledServiceImpl implements ProfiledService {
+
+  @Override
+  @Profile
+  public int multiply(int a, int b) {
+    return a * b;
+  }
+
+  @Override
+  @Profile
+  public void fail() {
+    throw new IllegalStateException("failed");
+  }
+}
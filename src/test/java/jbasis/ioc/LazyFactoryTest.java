@@ -0,0 +1,87 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyFactoryTest {
+
+  @Test public void creates_value_exactly_once_under_contention() throws Exception {
+    AtomicInteger creations = new AtomicInteger();
+    LazyFactory<Object> lazy = new LazyFactory<>(sf -> {
+      creations.incrementAndGet();
+      return new Object();
+    });
+
+    int threads = 16;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Object>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        Callable<Object> call = () -> {
+          start.await();
+          return lazy.apply(null);
+        };
+        results.add(executor.submit(call));
+      }
+      start.countDown();
+
+      Object first = results.get(0).get();
+      for (Future<Object> result : results) {
+        assertSame(first, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(1, creations.get());
+    assertTrue(lazy.isPresent());
+  }
+
+  @Test public void is_not_present_until_applied() {
+    LazyFactory<String> lazy = new LazyFactory<>(sf -> "value");
+    assertFalse(lazy.isPresent());
+    assertEquals("value", lazy.apply(null));
+    assertTrue(lazy.isPresent());
+  }
+
+  @Test public void can_memoize_null() {
+    AtomicInteger creations = new AtomicInteger();
+    LazyFactory<String> lazy = new LazyFactory<>(sf -> {
+      creations.incrementAndGet();
+      return null;
+    });
+    lazy.apply(null);
+    lazy.apply(null);
+    assertEquals(1, creations.get());
+    assertTrue(lazy.isPresent());
+  }
+
+  @Test public void failed_creation_is_retried() {
+    AtomicInteger attempts = new AtomicInteger();
+    LazyFactory<String> lazy = new LazyFactory<>(sf -> {
+      if (attempts.incrementAndGet() == 1) {
+        throw new IllegalStateException("first attempt fails");
+      }
+      return "value";
+    });
+
+    assertThrows(IllegalStateException.class, () -> lazy.apply(null));
+    assertFalse(lazy.isPresent());
+    assertEquals("value", lazy.apply(null));
+  }
+}
@@ -0,0 +1,60 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import jbasis.logging.Level;
+
+public class LoggerTest {
+
+  @Test public void disabled_levels_do_not_reach_the_logger() {
+    RecordingLogger logger = new RecordingLogger(false);
+
+    logger.debug("one {}", 1);
+    logger.debug("two {} {}", 1, 2);
+    logger.debug("three {} {} {}", 1, 2, 3);
+    logger.debug("four {} {} {} {}", 1, 2, 3, 4);
+    logger.debug(() -> {
+      throw new AssertionError("supplier should not be called");
+    });
+
+    assertFalse(logger.isEnabled(Level.TRACE));
+    assertTrue(logger.isEnabled(Level.INFO));
+    assertTrue(logger.messages.isEmpty());
+  }
+
+  @Test public void enabled_levels_pass_arguments_through() {
+    RecordingLogger logger = new RecordingLogger(false);
+
+    logger.info("message");
+    logger.warn("one {}", 1);
+    logger.error("two {} {}", 1, 2);
+    logger.info(() -> "supplied");
+    logger.log(Level.WARN, "four {} {} {} {}", 1, 2, 3, 4);
+
+    assertEquals(5, logger.messages.size());
+    assertEquals("INFO message 0", logger.messages.get(0));
+    assertEquals("WARN one {} 1", logger.messages.get(1));
+    assertEquals("ERROR two {} {} 2", logger.messages.get(2));
+    assertEquals("INFO supplied 0", logger.messages.get(3));
+    assertEquals("WARN four {} {} {} {} 4", logger.messages.get(4));
+  }
+
+  @Test public void object_arrays_are_passed_as_the_arguments() {
+    RecordingLogger logger = new RecordingLogger(false);
+    Object[] args = { 1, 2, 3, 4 };
+    Object untyped = args;
+
+    logger.info("four {} {} {} {}", args);
+    logger.info("four {} {} {} {}", untyped);
+    logger.log(Level.WARN, "four {} {} {} {}", untyped);
+
+    assertEquals(3, logger.messages.size());
+    assertEquals("INFO four {} {} {} {} 4", logger.messages.get(0));
+    assertEquals("INFO four {} {} {} {} 4", logger.messages.get(1));
+    assertEquals("WARN four {} {} {} {} 4", logger.messages.get(2));
+  }
+}
@@ -0,0 +1,152 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+
+public class OrderedCloseTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void singletons_are_closed_after_their_dependents() {
+    ClosingLog.reset(0);
+    Container container = new ContainerImpl(cfg -> cfg.apply(ClosingRegistry.class));
+    container.resolve(ClosingService.class);
+    container.resolve(ClosingReporter.class);
+
+    container.close();
+
+    List<String> closed = ClosingLog.closed;
+    assertEquals(4, closed.size());
+    assertTrue(closed.indexOf("service") < closed.indexOf("repository"), closed.toString());
+    assertTrue(closed.indexOf("repository") < closed.indexOf("pool"), closed.toString());
+    assertTrue(closed.indexOf("reporter") < closed.indexOf("pool"), closed.toString());
+  }
+
+  @Test public void independent_singletons_are_closed_in_parallel() {
+    ClosingLog.reset(400);
+    Container container = new ContainerImpl(cfg -> cfg.apply(ClosingRegistry.class));
+    container.resolve(ClosingReporter.class);
+    container.resolve(ClosingService.class);
+
+    long start = System.nanoTime();
+    container.close();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // service and reporter close together, then repository, then pool
+    assertEquals(4, ClosingLog.closed.size());
+    assertTrue(elapsed < 1500, "closing took " + elapsed + " ms");
+  }
+
+  @Test public void slow_singletons_are_left_behind_after_the_timeout() {
+    ClosingLog.reset(10_000);
+    Container container = new ContainerImpl(cfg -> {
+      cfg.apply(ClosingRegistry.class);
+      cfg.useCloseTimeouts(100, 250);
+    });
+    container.resolve(ClosingService.class);
+
+    long start = System.nanoTime();
+    container.close();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue(elapsed < 2000, "closing took " + elapsed + " ms");
+    assertTrue(ClosingLog.closed.isEmpty(), ClosingLog.closed.toString());
+  }
+
+  @Test public void dependencies_of_a_singleton_that_did_not_close_are_left_open() {
+    ClosingLog.reset(0);
+    ClosingLog.hanging = "service";
+    Container container = new ContainerImpl(cfg -> {
+      cfg.apply(ClosingRegistry.class);
+      cfg.useCloseTimeouts(100, 5000);
+    });
+    container.resolve(ClosingService.class);
+    container.resolve(ClosingReporter.class);
+
+    long start = System.nanoTime();
+    container.close();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // the reporter was created by a factory after the service, so it
+    // closes first and does not depend on the service
+    assertTrue(elapsed < 2000, "closing took " + elapsed + " ms");
+    assertEquals(List.of("reporter"), ClosingLog.closed);
+  }
+}
+
+class ClosingRegistry extends Registry {
+  public ClosingRegistry() {
+    register(cfg -> cfg
+        .addSingleton(ClosingPool.class, ClosingPool.class)
+        .addSingleton(ClosingRepository.class, ClosingRepository.class)
+        .addSingleton(ClosingService.class, ClosingService.class)
+        .addSingleton(ClosingReporter.class,
+            ctx -> new ClosingReporter(ctx.resolve(ClosingPool.class))));
+  }
+}
+
+class ClosingLog {
+  static final List<String> closed = new CopyOnWriteArrayList<>();
+  static volatile long closeMilliseconds;
+  static volatile String hanging;
+
+  static void reset(long milliseconds) {
+    closed.clear();
+    closeMilliseconds = milliseconds;
+    hanging = null;
+  }
+
+  static void close(String name) throws InterruptedException {
+    Thread.sleep(name.equals(hanging) ? 10_000 : closeMilliseconds);
+    closed.add(name);
+  }
+}
+
+class ClosingPool implements AutoCloseable {
+  @Override
+  public void close() throws Exception {
+    ClosingLog.close("pool");
+  }
+}
+
+class ClosingRepository implements AutoCloseable {
+  ClosingRepository(ClosingPool pool) {
+  }
+
+  @Override
+  public void close() throws Exception {
+    ClosingLog.close("repository");
+  }
+}
+
+class ClosingService implements AutoCloseable {
+  ClosingService(ClosingRepository repository) {
+  }
+
+  @Override
+  public void close() throws Exception {
+    ClosingLog.close("service");
+  }
+}
+
+class ClosingReporter implements AutoCloseable {
+  ClosingReporter(ClosingPool pool) {
+  }
+
+  @Override
+  public void close() throws Exception {
+    ClosingLog.close("reporter");
+  }
+}
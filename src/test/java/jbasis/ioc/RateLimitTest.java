@@ -0,0 +1,191 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.RateLimit;
+import jbasis.interception.RateLimitExceededException;
+import jbasis.interception.Retry;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.util.JBasisException;
+
+public class RateLimitTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void calls_beyond_the_burst_fail_fast() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(RateLimitedServiceRegistry.class));
+    RateLimitedService svc = container.resolve(RateLimitedService.class);
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals("ok", svc.call());
+    }
+    RateLimitExceededException first = assertThrows(RateLimitExceededException.class,
+        () -> svc.call());
+    RateLimitExceededException second = assertThrows(RateLimitExceededException.class,
+        () -> svc.call());
+    assertSame(first, second);
+    assertEquals(0, first.getStackTrace().length);
+
+    container.close();
+  }
+
+  @Test public void calls_wait_for_a_permit_within_the_budget() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(RateLimitedServiceRegistry.class));
+    RateLimitedService svc = container.resolve(RateLimitedService.class);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 3; i++) {
+      assertEquals("ok", svc.waitForPermit());
+    }
+    long elapsed = System.nanoTime() - start;
+
+    assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(35),
+        "expected to wait for two permits but took " + elapsed + "ns");
+
+    container.close();
+  }
+
+  @Test public void keyed_calls_have_their_own_buckets() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(RateLimitedServiceRegistry.class));
+    RateLimitedService svc = container.resolve(RateLimitedService.class);
+
+    assertEquals("a", svc.keyed("a"));
+    assertEquals("b", svc.keyed("b"));
+    assertEquals(null, svc.keyed(null));
+    assertThrows(RateLimitExceededException.class, () -> svc.keyed("a"));
+    assertThrows(RateLimitExceededException.class, () -> svc.keyed(null));
+
+    container.close();
+  }
+
+  @Test public void async_calls_get_a_failed_future() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(RateLimitedServiceRegistry.class));
+    RateLimitedService svc = container.resolve(RateLimitedService.class);
+
+    assertEquals("ok", svc.async().get(5, TimeUnit.SECONDS));
+    CompletableFuture<String> rejected = svc.async();
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> rejected.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof RateLimitExceededException);
+
+    container.close();
+  }
+
+  @Test public void key_argument_out_of_range_names_the_method() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(RateLimitedServiceRegistry.class));
+    RateLimitedService svc = container.resolve(RateLimitedService.class);
+
+    JBasisException e = assertThrows(JBasisException.class, () -> svc.missingKey());
+    assertTrue(e.getMessage().contains("RateLimitedServiceImpl.missingKey"), e.getMessage());
+
+    container.close();
+  }
+
+  @Test public void retries_declared_before_the_limit_are_limited() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(RateLimitedServiceRegistry.class));
+    RateLimitedService svc = container.resolve(RateLimitedService.class);
+
+    assertEquals("ok", svc.retried());
+    assertThrows(RateLimitExceededException.class, () -> svc.retried());
+    assertEquals(1, RateLimitedServiceImpl.retriedInvocations.get());
+
+    container.close();
+  }
+
+  @Test public void interrupted_waits_are_rejected() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(RateLimitedServiceRegistry.class));
+    RateLimitedService svc = container.resolve(RateLimitedService.class);
+
+    assertEquals("ok", svc.slowPermits());
+    Thread.currentThread().interrupt();
+    assertThrows(RateLimitExceededException.class, () -> svc.slowPermits());
+    assertTrue(Thread.interrupted());
+
+    container.close();
+  }
+}
+
+class RateLimitedServiceRegistry extends Registry {
+  public RateLimitedServiceRegistry() {
+    register(cfg -> cfg.addTransient(RateLimitedService.class, RateLimitedServiceImpl.class));
+  }
+}
+
+interface RateLimitedService {
+  String call();
+
+  String waitForPermit();
+
+  String keyed(String key);
+
+  CompletableFuture<String> async();
+
+  String missingKey();
+
+  String retried();
+
+  String slowPermits();
+}
+
+class RateLimitedServiceImpl implements RateLimitedService {
+  static final AtomicInteger retriedInvocations = new AtomicInteger();
+
+  @Override
+  @RateLimit(permitsPerSecond = 1, burst = 3)
+  public String call() {
+    return "ok";
+  }
+
+  @Override
+  @RateLimit(permitsPerSecond = 50, maxWaitMilliseconds = 1000)
+  public String waitForPermit() {
+    return "ok";
+  }
+
+  @Override
+  @RateLimit(permitsPerSecond = 1, keyArgument = 0)
+  public String keyed(String key) {
+    return key;
+  }
+
+  @Override
+  @RateLimit(permitsPerSecond = 1, maxWaitMilliseconds = 5000)
+  public CompletableFuture<String> async() {
+    return CompletableFuture.completedFuture("ok");
+  }
+
+  @Override
+  @RateLimit(permitsPerSecond = 1, keyArgument = 0)
+  public String missingKey() {
+    return "ok";
+  }
+
+  @Override
+  @Retry(tries = 3, backOffIntervalMilliseconds = 1)
+  @RateLimit(permitsPerSecond = 1)
+  public String retried() {
+    retriedInvocations.incrementAndGet();
+    return "ok";
+  }
+
+  @Override
+  @RateLimit(permitsPerSecond = 1, maxWaitMilliseconds = 5000)
+  public String slowPermits() {
+    return "ok";
+  }
+}
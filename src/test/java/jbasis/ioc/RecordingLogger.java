@@ -0,0 +1,30 @@
+package jbasis.ioc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jbasis.logging.Level;
+import jbasis.logging.Logger;
+
+/**
+ * A logger that records the level, format and number of arguments of
+ * every message it is passed.
+ */
+class RecordingLogger implements Logger {
+  final List<String> messages = new ArrayList<>();
+  private final boolean debugEnabled;
+
+  RecordingLogger(boolean debugEnabled) {
+    this.debugEnabled = debugEnabled;
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return debugEnabled;
+  }
+
+  @Override
+  public void log(Level level, String format, Object... args) {
+    messages.add(level + " " + format + " " + args.length);
+  }
+}
@@ -0,0 +1,297 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.interception.Async;
+import jbasis.interception.Bulkhead;
+import jbasis.interception.Coalesce;
+import jbasis.interception.Timeout;
+import jbasis.interception.TimeoutExceededException;
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+import jbasis.metrics.MethodBulkheads;
+import jbasis.util.JBasisException;
+
+public class TimeoutTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void blocking_calls_are_interrupted_when_the_time_is_up() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(TimedServiceRegistry.class));
+    TimedService svc = container.resolve(TimedService.class);
+
+    long start = System.nanoTime();
+    assertThrows(TimeoutExceededException.class, () -> svc.sleep(5000));
+    long elapsed = System.nanoTime() - start;
+
+    assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2), "took " + elapsed + "ns");
+    assertFalse(Thread.currentThread().isInterrupted());
+
+    container.close();
+  }
+
+  @Test public void calls_that_ignore_the_interrupt_still_time_out() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(TimedServiceRegistry.class));
+    TimedService svc = container.resolve(TimedService.class);
+
+    assertThrows(TimeoutExceededException.class, () -> svc.spin(150));
+
+    assertFalse(Thread.interrupted());
+
+    container.close();
+  }
+
+  @Test public void fast_calls_return_and_leave_no_interrupt_behind() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(TimedServiceRegistry.class));
+    TimedService svc = container.resolve(TimedService.class);
+
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, svc.echo(i));
+    }
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    assertFalse(Thread.interrupted());
+
+    container.close();
+  }
+
+  @Test public void async_calls_fail_when_the_time_is_up() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(TimedServiceRegistry.class));
+    TimedService svc = container.resolve(TimedService.class);
+    CompletableFuture<String> never = new CompletableFuture<>();
+
+    CompletableFuture<String> future = svc.later(never);
+    CompletableFuture<String> callbackThread =
+        future.handle((value, error) -> Thread.currentThread().getName());
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> future.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof TimeoutExceededException);
+    assertTrue(never.isCancelled());
+    assertFalse("jbasis-timer".equals(callbackThread.get(5, TimeUnit.SECONDS)));
+
+    container.close();
+  }
+
+  @Test public void plain_futures_are_waited_for_on_the_container_executor() throws Exception {
+    Container container = new ContainerImpl(cfg -> {
+      cfg.useAsyncExecutor(() -> Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "future-waiter");
+        thread.setDaemon(true);
+        return thread;
+      }));
+      cfg.apply(TimedServiceRegistry.class);
+    });
+    TimedService svc = container.resolve(TimedService.class);
+    WatchedTask task = new WatchedTask(() -> "done");
+
+    Future<String> future = svc.plain(task);
+    task.run();
+
+    assertEquals("done", future.get(5, TimeUnit.SECONDS));
+    assertEquals("future-waiter", task.waiter);
+
+    container.close();
+  }
+
+  @Test public void async_methods_reject_interceptors_after_the_timeout() {
+    Container container = new ContainerImpl(cfg -> cfg.apply(TimedServiceRegistry.class));
+    TimedService svc = container.resolve(TimedService.class);
+
+    JBasisException e = assertThrows(JBasisException.class, () -> svc.guardedLater());
+    assertTrue(e.getMessage().contains("TimedServiceImpl.guardedLater"), e.getMessage());
+
+    container.close();
+  }
+
+  @Test public void the_timer_thread_stops_once_no_deadline_is_pending() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(TimedServiceRegistry.class));
+    TimedService svc = container.resolve(TimedService.class);
+
+    assertEquals(1, svc.echo(1));
+    container.close();
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (timerThreadAlive() && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+    assertFalse(timerThreadAlive());
+  }
+
+  @Test public void async_methods_are_still_dispatched() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(TimedServiceRegistry.class));
+    TimedService svc = container.resolve(TimedService.class);
+
+    assertFalse(svc.dispatched(Thread.currentThread()).get(5, TimeUnit.SECONDS));
+
+    container.close();
+  }
+
+  @Test public void interceptors_after_the_timeout_still_see_the_outcome() throws Exception {
+    Container container = new ContainerImpl(cfg -> cfg.apply(TimedServiceRegistry.class));
+    TimedService svc = container.resolve(TimedService.class);
+
+    assertThrows(TimeoutExceededException.class, () -> svc.guardedSleep(5000));
+    assertThrows(TimeoutExceededException.class, () -> svc.guardedSpin(150));
+    svc.guardedSpin(0);
+
+    assertEquals(0, MethodBulkheads.find(
+        TimedServiceImpl.class.getMethod("guardedSpin", long.class)).getInFlight());
+    assertEquals(0, MethodBulkheads.find(
+        TimedServiceImpl.class.getMethod("guardedSleep", long.class)).getInFlight());
+
+    assertThrows(TimeoutExceededException.class, () -> svc.coalesced("key", 150));
+    String value = CompletableFuture.supplyAsync(() -> svc.coalesced("key", 0))
+        .get(5, TimeUnit.SECONDS);
+    assertEquals("key", value);
+
+    container.close();
+  }
+
+  private static boolean timerThreadAlive() {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("jbasis-timer") && thread.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
+
+class TimedServiceRegistry extends Registry {
+  public TimedServiceRegistry() {
+    register(cfg -> cfg.addTransient(TimedService.class, TimedServiceImpl.class));
+  }
+}
+
+interface TimedService {
+  void sleep(long milliseconds);
+
+  void spin(long milliseconds);
+
+  int echo(int value);
+
+  CompletableFuture<String> later(CompletableFuture<String> stage);
+
+  void guardedSleep(long milliseconds);
+
+  void guardedSpin(long milliseconds);
+
+  String coalesced(String key, long milliseconds);
+
+  CompletableFuture<Boolean> dispatched(Thread caller);
+
+  Future<String> plain(Future<String> task);
+
+  CompletableFuture<String> guardedLater();
+}
+
+/**
+ * A task that records the thread that waited for it.
+ */
+class WatchedTask extends FutureTask<String> {
+  volatile String waiter;
+
+  WatchedTask(Callable<String> callable) {
+    super(callable);
+  }
+
+  @Override
+  public String get() throws InterruptedException, ExecutionException {
+    waiter = Thread.currentThread().getName();
+    return super.get();
+  }
+}
+
+class TimedServiceImpl implements TimedService {
+
+  @Override
+  @Timeout(milliseconds = 50)
+  public void sleep(long milliseconds) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(milliseconds);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted", e);
+    }
+  }
+
+  @Override
+  @Timeout(milliseconds = 30)
+  public void spin(long milliseconds) {
+    long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+    while (System.nanoTime() < end) {
+      Thread.onSpinWait();
+    }
+  }
+
+  @Override
+  @Timeout(milliseconds = 50)
+  public int echo(int value) {
+    return value;
+  }
+
+  @Override
+  @Timeout(milliseconds = 50)
+  public CompletableFuture<String> later(CompletableFuture<String> stage) {
+    return stage;
+  }
+
+  @Override
+  @Timeout(milliseconds = 50)
+  @Bulkhead(maxConcurrentCalls = 1)
+  public void guardedSleep(long milliseconds) {
+    sleep(milliseconds);
+  }
+
+  @Override
+  @Timeout(milliseconds = 30)
+  @Bulkhead(maxConcurrentCalls = 1)
+  public void guardedSpin(long milliseconds) {
+    spin(milliseconds);
+  }
+
+  @Override
+  @Timeout(milliseconds = 30)
+  @Coalesce
+  public String coalesced(String key, long milliseconds) {
+    spin(milliseconds);
+    return key;
+  }
+
+  @Override
+  @Async
+  @Timeout(milliseconds = 1000)
+  public CompletableFuture<Boolean> dispatched(Thread caller) {
+    return CompletableFuture.completedFuture(Thread.currentThread() == caller);
+  }
+
+  @Override
+  @Timeout(milliseconds = 5000)
+  public Future<String> plain(Future<String> task) {
+    return task;
+  }
+
+  @Override
+  @Timeout(milliseconds = 50)
+  @Bulkhead(maxConcurrentCalls = 1)
+  public CompletableFuture<String> guardedLater() {
+    return CompletableFuture.completedFuture("late");
+  }
+}
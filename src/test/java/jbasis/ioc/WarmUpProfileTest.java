@@ -0,0 +1,131 @@
+package jbasis.ioc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jbasis.logging.Log4JLogger;
+import jbasis.logging.LoggerFactory;
+
+public class WarmUpProfileTest {
+
+  @BeforeAll public static void beforeAll() {
+    LoggerFactory.registerFactory(cls -> new Log4JLogger(cls));
+  }
+
+  @Test public void used_singletons_are_recorded_and_prewarmed_on_the_next_run()
+      throws Exception {
+    Path profile = Files.createTempDirectory("jbasis").resolve("singletons.profile");
+    ProfiledSingletons.reset();
+
+    Container first = new ContainerImpl(cfg -> {
+      cfg.apply(ProfiledRegistry.class);
+      cfg.useWarmUpProfile(profile);
+    });
+    first.resolve(ProfiledConsumer.class);
+    first.resolve(ProfiledConsumer.class);
+    first.close();
+
+    List<String> recorded = Files.readAllLines(profile).stream()
+        .filter(line -> !line.startsWith("#"))
+        .map(line -> line.substring(0, line.indexOf('\t')))
+        .collect(Collectors.toList());
+    assertEquals(List.of(ProfiledConsumer.class.getName(), ProfiledDependency.class.getName()),
+        recorded);
+
+    ProfiledSingletons.reset();
+    Container second = new ContainerImpl(cfg -> {
+      cfg.apply(ProfiledRegistry.class);
+      cfg.useWarmUpProfile(profile);
+    });
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (ProfiledSingletons.consumers.get() == 0 && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(5);
+    }
+
+    assertEquals(1, ProfiledSingletons.consumers.get());
+    assertEquals(1, ProfiledSingletons.dependencies.get());
+    assertEquals(0, ProfiledSingletons.unused.get());
+    second.resolve(ProfiledConsumer.class);
+    assertEquals(1, ProfiledSingletons.consumers.get());
+
+    second.close();
+  }
+
+  @Test public void singletons_created_only_by_pre_warming_are_not_recorded() throws Exception {
+    Path profile = Files.createTempDirectory("jbasis").resolve("singletons.profile");
+    Files.write(profile, List.of(ProfiledUnused.class.getName() + "\t10"));
+
+    Container container = new ContainerImpl(cfg -> {
+      cfg.apply(ProfiledRegistry.class);
+      cfg.useWarmUpProfile(profile);
+    });
+    container.close();
+
+    assertFalse(Files.readAllLines(profile).stream()
+        .anyMatch(line -> line.startsWith(ProfiledUnused.class.getName())));
+  }
+
+  @Test public void missing_profile_starts_lazily() throws Exception {
+    Path profile = Files.createTempDirectory("jbasis").resolve("missing.profile");
+    ProfiledSingletons.reset();
+
+    Container container = new ContainerImpl(cfg -> {
+      cfg.apply(ProfiledRegistry.class);
+      cfg.useWarmUpProfile(profile);
+    });
+
+    assertEquals(0, ProfiledSingletons.consumers.get());
+    container.close();
+    assertTrue(Files.exists(profile));
+  }
+}
+
+class ProfiledRegistry extends Registry {
+  public ProfiledRegistry() {
+    register(cfg -> cfg
+        .addSingleton(ProfiledDependency.class, ProfiledDependency.class)
+        .addSingleton(ProfiledConsumer.class, ProfiledConsumer.class)
+        .addSingleton(ProfiledUnused.class, ProfiledUnused.class));
+  }
+}
+
+class ProfiledSingletons {
+  static final AtomicInteger dependencies = new AtomicInteger();
+  static final AtomicInteger consumers = new AtomicInteger();
+  static final AtomicInteger unused = new AtomicInteger();
+
+  static void reset() {
+    dependencies.set(0);
+    consumers.set(0);
+    unused.set(0);
+  }
+}
+
+class ProfiledDependency {
+  ProfiledDependency() {
+    ProfiledSingletons.dependencies.incrementAndGet();
+  }
+}
+
+class ProfiledConsumer {
+  ProfiledConsumer(ProfiledDependency dependency) {
+    ProfiledSingletons.consumers.incrementAndGet();
+  }
+}
+
+class ProfiledUnused {
+  ProfiledUnused() {
+    ProfiledSingletons.unused.incrementAndGet();
+  }
+}